@@ -2,18 +2,27 @@ package api;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import domain.ClusterSnapshot;
+import domain.ClusterSnapshotService;
+import domain.DropLedger;
 import domain.GrpcPersistentSession;
+import domain.SessionTopology;
 import domain.GrpcSessionService;
 import domain.GrpcSessionUtilization;
 import domain.utils.AutoScaler;
 import domain.utils.K8AutoScaler;
+import domain.utils.ProtocolTaskRunner;
+import domain.utils.RebalancePlanner;
+import domain.utils.ScalingGate;
 import infrastructure.resources.rest.dto.ConsulService;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -57,6 +66,18 @@ public class GrpcSessionApi {
     @Inject
     K8AutoScaler k8AutoScaler;
 
+    @Inject
+    ClusterSnapshotService clusterSnapshotService;
+
+    @Inject
+    DropLedger dropLedger;
+
+    @Inject
+    ProtocolTaskRunner protocolTaskRunner;
+
+    @Inject
+    ScalingGate scalingGate;
+
     @Inject
     AutoScaler autoScaler;
 
@@ -76,17 +97,20 @@ public class GrpcSessionApi {
     }
 
     public void analyzeSessionServerUtilizationForKubernetesEnvs() {
+        analyzeSessionServerUtilizationForKubernetesEnvs(clusterSnapshotService.captureForKubernetes());
+    }
+
+    public void analyzeSessionServerUtilizationForKubernetesEnvs(ClusterSnapshot snapshot) {
         var sanitizedK8AppLabel = sanitizeEnvVariable(kubernetesAppLabel);
-        var grpcSessions = grpcSessionService.findAllSessions();
         logger.info("Initiating gRPC utilization analysis");
-        var activePods = k8AutoScaler.getPodsWithLabel("default", "traffic", "active");
-        var inactivePods = k8AutoScaler.getPodsWithLabel("default", "traffic", "inactive");
+        var activePods = snapshot.activePods();
+        var inactivePods = snapshot.inactivePods();
         logger.info("List of active pods with name starting with " + sanitizedK8AppLabel + ": "
                 + objectMapper.valueToTree(activePods));
         logger.info("List of inactive pods with name starting with " + sanitizedK8AppLabel + ": "
                 + objectMapper.valueToTree(inactivePods));
 
-        var cachedSessionUtilizationMap = grpcSessionService.retrieveServerSessionUtilization(grpcSessions);
+        var cachedSessionUtilizationMap = grpcSessionService.retrieveServerSessionUtilization(snapshot.grpcSessionsPerHost());
         Map<String, Integer> utilizationMapPercentMap = cachedSessionUtilizationMap.entrySet().stream()
                 .map(p -> Map.of(p.getKey(), (int) (((float) p.getValue().activeSessions() / p.getValue().maxSessions()) * 100)))
                 .flatMap(m -> m.entrySet().stream())
@@ -94,9 +118,9 @@ public class GrpcSessionApi {
 
         logger.info("Cached gRPC Session Map: " + objectMapper.valueToTree(cachedSessionUtilizationMap));
 
-        if (grpcSessions.isEmpty()) {
+        if (cachedSessionUtilizationMap.isEmpty()) {
             logger.log(Level.INFO, "No gRPC sessions to analyze");
-            killK8ServersWithNoSessions(utilizationMapPercentMap, activePods, inactivePods);
+            killK8ServersWithNoSessions(snapshot, utilizationMapPercentMap, activePods, inactivePods);
             return;
         }
 
@@ -119,7 +143,7 @@ public class GrpcSessionApi {
             var maxTargetServerThreshold = Math.ceil(
                     overallActiveSessions / ((float) maxSessionsPerServer * ((float) maxUtilizationPercent / 100.0)));
             numberOfServersToScaleOut = (int) maxTargetServerThreshold - activePods.size();
-            scaleOutK8Servers(numberOfServersToScaleOut, activePods, inactivePods);
+            scaleOutK8Servers(snapshot, numberOfServersToScaleOut, activePods, inactivePods);
         }
 
         if (overallUtilizationPercent < minUtilizationPercent) {
@@ -141,38 +165,66 @@ public class GrpcSessionApi {
         }
 
         if (numberOfServersToScaleIn == 0 && numberOfServersToScaleOut == 0) {
-            killK8ServersWithNoSessions(utilizationMapPercentMap, activePods, inactivePods);
+            killK8ServersWithNoSessions(snapshot, utilizationMapPercentMap, activePods, inactivePods);
         }
     }
 
-    public void killK8ServersWithNoSessions(Map<String, Integer> utilizationMapPercentMap, List<Pod> activePods,
+    /**
+     * Reactive variant of {@link #analyzeSessionServerUtilizationForKubernetesEnvs()}: the snapshot is
+     * captured without blocking, and the analysis, whose scaling calls use the blocking orchestrator
+     * clients, runs on its own virtual thread.
+     */
+    public Uni<Void> analyzeSessionServerUtilizationForKubernetesEnvsAsync() {
+        return clusterSnapshotService.captureForKubernetesAsync().flatMap(this::analyzeSessionServerUtilizationForKubernetesEnvsAsync);
+    }
+
+    public Uni<Void> analyzeSessionServerUtilizationForKubernetesEnvsAsync(ClusterSnapshot snapshot) {
+        return protocolTaskRunner.offload(() -> analyzeSessionServerUtilizationForKubernetesEnvs(snapshot));
+    }
+
+    public Uni<Void> analyzeSessionServerUtilizationForContainerRuntimeEnvsAsync() {
+        return clusterSnapshotService.captureForContainerRuntimeAsync().flatMap(this::analyzeSessionServerUtilizationForContainerRuntimeEnvsAsync);
+    }
+
+    public Uni<Void> analyzeSessionServerUtilizationForContainerRuntimeEnvsAsync(ClusterSnapshot snapshot) {
+        return protocolTaskRunner.offload(() -> analyzeSessionServerUtilizationForContainerRuntimeEnvs(snapshot));
+    }
+
+    public void killK8ServersWithNoSessions(ClusterSnapshot snapshot, Map<String, Integer> utilizationMapPercentMap, List<Pod> activePods,
             List<Pod> inactivePods) {
-        int podsMarkedForDeletion = 0;
-        for (Pod pod : inactivePods) {
-            var isThereAnySessionConnectedToInactiveService = utilizationMapPercentMap.containsKey(pod.getStatus().getPodIP())
-                    && utilizationMapPercentMap.get(pod.getStatus().getPodIP()) > 0;
-            if (!isThereAnySessionConnectedToInactiveService) {
-                k8AutoScaler.patchPodAnnotation(pod.getMetadata().getName(), pod.getMetadata().getNamespace(),
-                        "controller.kubernetes.io/pod-deletion-cost", "-100");
-                podsMarkedForDeletion++;
+        scalingGate.run(sanitizeEnvVariable(kubernetesAppLabel), () -> {
+            int podsMarkedForDeletion = 0;
+            for (Pod pod : inactivePods) {
+                var isThereAnySessionConnectedToInactiveService = utilizationMapPercentMap.containsKey(pod.getStatus().getPodIP())
+                        && utilizationMapPercentMap.get(pod.getStatus().getPodIP()) > 0;
+                if (!isThereAnySessionConnectedToInactiveService) {
+                    k8AutoScaler.patchPodAnnotation(pod.getMetadata().getName(), pod.getMetadata().getNamespace(),
+                            "controller.kubernetes.io/pod-deletion-cost", "-100");
+                    podsMarkedForDeletion++;
+                }
             }
-        }
-        if (podsMarkedForDeletion > 0) {
-            var targetServerCount = activePods.size() + inactivePods.size() - podsMarkedForDeletion;
-            k8AutoScaler.patchDeploymentReplicas(sanitizeEnvVariable(kubernetesAppLabel), "default", targetServerCount);
-        }
-        logger.info("gRPC pods marked for deletion: " + podsMarkedForDeletion);
+            if (podsMarkedForDeletion > 0) {
+                // Each protocol marks the pods idle for its own sessions, the deployment shrinks once per snapshot
+                var replicasToRemove = scalingGate.unclaimed(sanitizeEnvVariable(kubernetesAppLabel), snapshot, -podsMarkedForDeletion);
+                // Pods are removed as a delta, an absolute target would overwrite the scaling of the other rebalancer shards
+                k8AutoScaler.changeDeploymentReplicas(sanitizeEnvVariable(kubernetesAppLabel), "default", replicasToRemove);
+            }
+            logger.info("gRPC pods marked for deletion: " + podsMarkedForDeletion);
+        });
     }
 
     public void analyzeSessionServerUtilizationForContainerRuntimeEnvs() {
-        var grpcSessions = grpcSessionService.findAllSessions();
-        var sessionUtilizationMap = grpcSessionService.retrieveServerSessionUtilization(grpcSessions);
-        var consulActiveServices = grpcSessionService.getConsulActiveServices(sanitizeEnvVariable(containerRuntimeGrpcAppName));
-        var consulInactiveServices = grpcSessionService.getConsulInactiveServices(sanitizeEnvVariable(containerRuntimeGrpcAppName));
+        analyzeSessionServerUtilizationForContainerRuntimeEnvs(clusterSnapshotService.captureForContainerRuntime());
+    }
+
+    public void analyzeSessionServerUtilizationForContainerRuntimeEnvs(ClusterSnapshot snapshot) {
+        var sessionUtilizationMap = grpcSessionService.retrieveServerSessionUtilization(snapshot.grpcSessionsPerHost());
+        var consulActiveServices = snapshot.grpcConsulActiveServices();
+        var consulInactiveServices = snapshot.grpcConsulInactiveServices();
 
         logger.info("List of active consul services for app " + sanitizeEnvVariable(containerRuntimeGrpcAppName) + ": "
                 + objectMapper.valueToTree(consulActiveServices));
-        if (grpcSessions.isEmpty()) {
+        if (sessionUtilizationMap.isEmpty()) {
             logger.log(Level.INFO, "No gRPC sessions to analyze");
             return;
         }
@@ -203,7 +255,7 @@ public class GrpcSessionApi {
                     overallActiveSessions / ((float) maxSessionsPerServer * ((float) maxUtilizationPercent / 100.0)));
             numberOfServersToScaleOut = (int) maxTargetServerThreshold - consulActiveServices.size();
             var targetServerCount = consulActiveServices.size() + numberOfServersToScaleOut;
-            scaleOutSessionServers(targetServerCount, numberOfServersToScaleOut, consulInactiveServices, consulActiveServices);
+            scaleOutSessionServers(snapshot, targetServerCount, numberOfServersToScaleOut, consulInactiveServices, consulActiveServices);
         }
 
         if (overallUtilizationPercent < minUtilizationPercent) {
@@ -232,40 +284,49 @@ public class GrpcSessionApi {
         logger.info("gRPC Utilization Percent Map: " + utilizationMapPercentMap);
 
         if (numberOfServersToScaleIn == 0 && numberOfServersToScaleOut == 0) {
-            killServersWithNoSessions(utilizationMapPercentMap, consulActiveServices);
+            killServersWithNoSessions(utilizationMapPercentMap, consulInactiveServices);
         }
     }
 
-    public void killServersWithNoSessions(Map<String, Integer> utilizationMapPercentMap, List<ConsulService> consulActiveServices) {
-        var consulInactiveServices = grpcSessionService.getConsulInactiveServices(sanitizeEnvVariable(containerRuntimeGrpcAppName));
-        consulInactiveServices.forEach(service -> {
-            var isThereAnySessionConnectedToInactiveService = utilizationMapPercentMap.containsKey(service.Service.Address)
-                    && utilizationMapPercentMap.get(service.Service.Address) > 0;
-            if (!isThereAnySessionConnectedToInactiveService) {
-                autoScaler.stopSpecificContainer(service.Service.Address);
-            }
+    public void killServersWithNoSessions(Map<String, Integer> utilizationMapPercentMap, List<ConsulService> consulInactiveServices) {
+        scalingGate.run(sanitizeEnvVariable(containerRuntimeGrpcAppName), () -> {
+            consulInactiveServices.forEach(service -> {
+                var isThereAnySessionConnectedToInactiveService = utilizationMapPercentMap.containsKey(service.Service.Address)
+                        && utilizationMapPercentMap.get(service.Service.Address) > 0;
+                if (!isThereAnySessionConnectedToInactiveService) {
+                    autoScaler.stopSpecificContainer(service.Service.Address);
+                }
+            });
         });
     }
 
-    public void scaleOutSessionServers(int targetServerCount, int numberOfServersToScaleOut, List<ConsulService> consulInactiveServices, List<ConsulService> consulActiveServices) {
-        consulInactiveServices.stream()
-            .limit(numberOfServersToScaleOut)
-            .forEach(service -> {
-                System.out.println("Activating inactive service " + service.Service.ID + " at " + service.Service.Address);
-                grpcSessionService.toggleConsulService(service.Service.ID, "false", "Activating service due to scale out request");
-            });
-        var numberOfServersToScaleOutWithActivatedServices = consulActiveServices.size() + consulInactiveServices.size() >= targetServerCount ? 0 : targetServerCount - (consulActiveServices.size() + consulInactiveServices.size());
-        if (numberOfServersToScaleOutWithActivatedServices <= 0) {
-            System.out.println("No need to scale out, inactive services can handle the target server count.");
-            return;
-        }
-        System.out.println("Scaling out gRPC session servers...");
-        autoScaler.scaleOut(targetServerCount, sanitizeEnvVariable(containerRuntimeGrpcAppName));
+    public void scaleOutSessionServers(ClusterSnapshot snapshot, int targetServerCount, int numberOfServersToScaleOut, List<ConsulService> consulInactiveServices, List<ConsulService> consulActiveServices) {
+        scalingGate.run(sanitizeEnvVariable(containerRuntimeGrpcAppName), () -> {
+            consulInactiveServices.stream()
+                .limit(numberOfServersToScaleOut)
+                .forEach(service -> {
+                    System.out.println("Activating inactive service " + service.Service.ID + " at " + service.Service.Address);
+                    grpcSessionService.toggleConsulService(service.Service.ID, "false", "Activating service due to scale out request");
+                });
+            var numberOfServersToScaleOutWithActivatedServices = consulActiveServices.size() + consulInactiveServices.size() >= targetServerCount ? 0 : targetServerCount - (consulActiveServices.size() + consulInactiveServices.size());
+            if (numberOfServersToScaleOutWithActivatedServices <= 0) {
+                System.out.println("No need to scale out, inactive services can handle the target server count.");
+                return;
+            }
+            System.out.println("Scaling out gRPC session servers...");
+            // Claimed like the session app, in case both app names point to the same containers
+            var containersToAdd = scalingGate.unclaimed(sanitizeEnvVariable(containerRuntimeGrpcAppName), snapshot, numberOfServersToScaleOutWithActivatedServices);
+            if (containersToAdd > 0) {
+                autoScaler.scaleOutBy(containersToAdd, sanitizeEnvVariable(containerRuntimeGrpcAppName));
+            }
+        });
     }
 
     public void scaleInSessionServers(int numberOfServers, Map<String, Integer> serverUtilization) {
-        logger.info("Scaling in gRPC session servers...");
-        autoScaler.scaleIn(numberOfServers, serverUtilization, sanitizeEnvVariable(containerRuntimeGrpcAppName));
+        scalingGate.run(sanitizeEnvVariable(containerRuntimeGrpcAppName), () -> {
+            logger.info("Scaling in gRPC session servers...");
+            autoScaler.scaleIn(numberOfServers, serverUtilization, sanitizeEnvVariable(containerRuntimeGrpcAppName));
+        });
     }
 
     public void analyzeSessionServerBalance() {
@@ -279,11 +340,14 @@ public class GrpcSessionApi {
     }
 
     public void analyzeSessionServerBalanceForContainerRuntime() {
-        var grpcSessions = grpcSessionService.findAllSessions();
-        var sessionUtilizationMap = grpcSessionService.retrieveServerSessionUtilization(grpcSessions);
-        var consulActiveServices = grpcSessionService.getConsulActiveServices(sanitizeEnvVariable(containerRuntimeGrpcAppName));
+        analyzeSessionServerBalanceForContainerRuntime(clusterSnapshotService.captureForContainerRuntime());
+    }
 
-        if (grpcSessions.isEmpty()) {
+    public void analyzeSessionServerBalanceForContainerRuntime(ClusterSnapshot snapshot) {
+        var sessionUtilizationMap = grpcSessionService.retrieveServerSessionUtilization(snapshot.grpcSessionsPerHost());
+        var consulActiveServices = snapshot.grpcConsulActiveServices();
+
+        if (sessionUtilizationMap.isEmpty()) {
             logger.info("No gRPC sessions to rebalance");
             return;
         }
@@ -323,9 +387,6 @@ public class GrpcSessionApi {
             }
         });
 
-        var sortedOverUtilizedServers = overUtilizedServers.entrySet().stream()
-                .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                .toList();
 
         logger.info("gRPC rebalancing summary: Overutilized Servers: " + overUtilizedServers
                 + ", Underutilized Servers: " + underUtilizedServers
@@ -333,22 +394,28 @@ public class GrpcSessionApi {
                 + "Overall Active Sessions: " + overallActiveSessions);
         logger.info("gRPC utilization percent map: " + utilizationMapPercentMap);
 
-        sortedOverUtilizedServers.forEach(s -> {
-            double maxSessions = sessionUtilizationMap.get(s.getKey()).maxSessions();
-            double activeSessions = sessionUtilizationMap.get(s.getKey()).activeSessions();
-            double activeSessionAverageThreshold = Math.ceil((maxSessions * ((double) overallUtilizationPercent / 100)));
-            int numberOfSessionsToOffload = (int) (activeSessions - activeSessionAverageThreshold);
-            offLoadSessions(s.getKey(), numberOfSessionsToOffload);
-        });
+        // Water-fill the overutilized servers down to the balanced level, moving no more sessions than the
+        // underutilized servers have room for, and publish the whole pass as one drop command
+        // Only active hosts take part, draining hosts are emptied by the scale-in path instead
+        var activeServers = consulActiveServices.stream().map(service -> service.Service.Address).collect(Collectors.toSet());
+        Map<String, RebalancePlanner.HostLoad> hostLoads = new HashMap<>();
+        activeServers.forEach(server -> hostLoads.put(server, new RebalancePlanner.HostLoad(
+                sessionUtilizationMap.containsKey(server) ? sessionUtilizationMap.get(server).activeSessions() : 0, maxSessionsPerServer)));
+        var rebalancePlan = RebalancePlanner.plan(hostLoads, overUtilizedServers.keySet(), underUtilizedServers.keySet());
+        logger.info("gRPC rebalance plan: " + rebalancePlan.sessionsMoved() + " sessions, transfers " + rebalancePlan.transfers());
+        offLoadSessions(new LinkedHashMap<>(rebalancePlan.dropsPerHost()), snapshot.grpcSessionsPerHost());
     }
 
     public void analyzeSessionServerBalanceForKubernetesEnvs() {
+        analyzeSessionServerBalanceForKubernetesEnvs(clusterSnapshotService.captureForKubernetes());
+    }
+
+    public void analyzeSessionServerBalanceForKubernetesEnvs(ClusterSnapshot snapshot) {
         logger.info("gRPC rebalancing started");
-        var grpcSessions = grpcSessionService.findAllSessions();
-        var sessionUtilizationMap = grpcSessionService.retrieveServerSessionUtilization(grpcSessions);
-        var activePods = k8AutoScaler.getPodsWithLabel("default", "traffic", "active");
+        var sessionUtilizationMap = grpcSessionService.retrieveServerSessionUtilization(snapshot.grpcSessionsPerHost());
+        var activePods = snapshot.activePods();
 
-        if (grpcSessions.isEmpty()) {
+        if (sessionUtilizationMap.isEmpty()) {
             logger.info("No gRPC sessions to rebalance");
             return;
         }
@@ -388,9 +455,6 @@ public class GrpcSessionApi {
             }
         });
 
-        var sortedOverUtilizedServers = overUtilizedServers.entrySet().stream()
-                .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                .toList();
 
         logger.info("gRPC rebalancing summary: Overutilized Servers: " + overUtilizedServers
                 + ", Underutilized Servers: " + underUtilizedServers
@@ -398,66 +462,87 @@ public class GrpcSessionApi {
                 + "Overall Active Sessions: " + overallActiveSessions);
         logger.info("gRPC utilization percent map: " + utilizationMapPercentMap);
 
-        sortedOverUtilizedServers.forEach(s -> {
-            double maxSessions = sessionUtilizationMap.get(s.getKey()).maxSessions();
-            double activeSessions = sessionUtilizationMap.get(s.getKey()).activeSessions();
-            double activeSessionAverageThreshold = Math.ceil((maxSessions * ((double) overallUtilizationPercent / 100)));
-            int numberOfSessionsToOffload = (int) (activeSessions - activeSessionAverageThreshold);
-            offLoadSessions(s.getKey(), numberOfSessionsToOffload);
-        });
+        // Water-fill the overutilized servers down to the balanced level, moving no more sessions than the
+        // underutilized servers have room for, and publish the whole pass as one drop command
+        // Only active hosts take part, draining hosts are emptied by the scale-in path instead
+        var activeServers = activePods.stream().map(pod -> pod.getStatus().getPodIP()).filter(ip -> ip != null).collect(Collectors.toSet());
+        Map<String, RebalancePlanner.HostLoad> hostLoads = new HashMap<>();
+        activeServers.forEach(server -> hostLoads.put(server, new RebalancePlanner.HostLoad(
+                sessionUtilizationMap.containsKey(server) ? sessionUtilizationMap.get(server).activeSessions() : 0, maxSessionsPerServer)));
+        var rebalancePlan = RebalancePlanner.plan(hostLoads, overUtilizedServers.keySet(), underUtilizedServers.keySet());
+        logger.info("gRPC rebalance plan: " + rebalancePlan.sessionsMoved() + " sessions, transfers " + rebalancePlan.transfers());
+        offLoadSessions(new LinkedHashMap<>(rebalancePlan.dropsPerHost()), snapshot.grpcSessionsPerHost());
     }
 
-    private void offLoadSessions(String fromServerId, int numberOfSessions) {
-        logger.info("Offloading " + numberOfSessions + " gRPC sessions from server " + fromServerId);
-        grpcSessionService.dropServerSessions(fromServerId, numberOfSessions);
+    private void offLoadSessions(Map<String, Integer> dropPlan, Map<String, Integer> sessionsPerHost) {
+        // Sessions a host was already told to drop and has not shed (or acknowledged) yet are part of its offload
+        var outstandingDrops = dropLedger.outstanding(SessionTopology.GRPC_PROTOCOL, sessionsPerHost);
+        var inFlightDrops = grpcSessionService.inFlightDrops();
+        dropPlan.replaceAll((hostId, sessions) -> sessions
+                - Math.max(outstandingDrops.getOrDefault(hostId, 0), inFlightDrops.getOrDefault(hostId, 0)));
+        dropPlan.values().removeIf(sessions -> sessions <= 0);
+        if (dropPlan.isEmpty()) {
+            return;
+        }
+        logger.info("Offloading gRPC sessions per server: " + dropPlan);
+        grpcSessionService.sendAdminCommand(dropPlan);
+        dropLedger.record(SessionTopology.GRPC_PROTOCOL, dropPlan, sessionsPerHost);
     }
 
     public void scaleInK8SessionServers(int numberOfServers, Map<String, Integer> serverUtilization, List<Pod> activePods) {
-        System.out.println("Scaling in gRPC session servers...");
-        System.out.println("Number of servers to scale in: " + numberOfServers + " active pods: " + activePods.size()
-                + " server utilization map: " + serverUtilization);
+        scalingGate.run(sanitizeEnvVariable(kubernetesAppLabel), () -> {
+            System.out.println("Scaling in gRPC session servers...");
+            System.out.println("Number of servers to scale in: " + numberOfServers + " active pods: " + activePods.size()
+                    + " server utilization map: " + serverUtilization);
 
-        var sortedActivePods = activePods.stream()
-                .sorted(Comparator.comparingInt(p -> serverUtilization.getOrDefault(p.getStatus().getPodIP(), 0)))
-                .toList();
+            var sortedActivePods = activePods.stream()
+                    .sorted(Comparator.comparingInt(p -> serverUtilization.getOrDefault(p.getStatus().getPodIP(), 0)))
+                    .toList();
 
-        System.out.println("Sorted active pods by utilization: " + sortedActivePods.stream()
-                .map(p -> p.getStatus().getPodIP() + ":" + serverUtilization.getOrDefault(p.getStatus().getPodIP(), 0))
-                .toList());
+            System.out.println("Sorted active pods by utilization: " + sortedActivePods.stream()
+                    .map(p -> p.getStatus().getPodIP() + ":" + serverUtilization.getOrDefault(p.getStatus().getPodIP(), 0))
+                    .toList());
 
-        var podsToScaleIn = sortedActivePods.stream()
-                .limit(numberOfServers)
-                .toList();
+            var podsToScaleIn = sortedActivePods.stream()
+                    .limit(numberOfServers)
+                    .toList();
 
-        System.out.println("Pods selected to scale in: "
-                + podsToScaleIn.stream().map(p -> p.getMetadata().getName()).toList());
+            System.out.println("Pods selected to scale in: "
+                    + podsToScaleIn.stream().map(p -> p.getMetadata().getName()).toList());
 
-        podsToScaleIn.forEach(pod -> {
-            logger.info("Cordoning pod " + pod.getMetadata().getName() + " with IP " + pod.getStatus().getPodIP());
-            k8AutoScaler.patchPodLabel(pod.getMetadata().getName(), pod.getMetadata().getNamespace(), "traffic", "inactive");
+            podsToScaleIn.forEach(pod ->
+                    logger.info("Cordoning pod " + pod.getMetadata().getName() + " with IP " + pod.getStatus().getPodIP()));
+            k8AutoScaler.patchPodLabels(podsToScaleIn, "traffic", "inactive");
         });
     }
 
-    public void scaleOutK8Servers(int numberOfServersToScaleOut, List<Pod> activePods, List<Pod> inactivePods) {
+    public void scaleOutK8Servers(ClusterSnapshot snapshot, int numberOfServersToScaleOut, List<Pod> activePods, List<Pod> inactivePods) {
         var sanitizedK8AppLabel = sanitizeEnvVariable(kubernetesAppLabel);
-        var targetServerCount = activePods.size() + numberOfServersToScaleOut;
-
-        inactivePods.stream()
-                .limit(numberOfServersToScaleOut)
-                .forEach(pod -> {
-                    logger.info("Activating inactive pod " + pod.getMetadata().getName());
-                    k8AutoScaler.patchPodLabel(pod.getMetadata().getName(), pod.getMetadata().getNamespace(), "traffic",
-                            "active");
-                });
-
-        var numberOfServersToScaleOutWithActivatedPods = activePods.size() + inactivePods.size() >= targetServerCount
-                ? 0
-                : targetServerCount - (activePods.size() + inactivePods.size());
-        if (numberOfServersToScaleOutWithActivatedPods <= 0) {
-            logger.info("No need to scale out, inactive pods can handle the target server count.");
-            return;
-        }
-        k8AutoScaler.patchDeploymentReplicas(sanitizedK8AppLabel, "default", targetServerCount);
+        scalingGate.run(sanitizedK8AppLabel, () -> {
+            var targetServerCount = activePods.size() + numberOfServersToScaleOut;
+
+            var podsToActivate = inactivePods.stream()
+                    .limit(numberOfServersToScaleOut)
+                    .toList();
+            podsToActivate.forEach(pod -> logger.info("Activating inactive pod " + pod.getMetadata().getName()));
+            k8AutoScaler.patchPodLabels(podsToActivate, "traffic", "active");
+
+            var numberOfServersToScaleOutWithActivatedPods = activePods.size() + inactivePods.size() >= targetServerCount
+                    ? 0
+                    : targetServerCount - (activePods.size() + inactivePods.size());
+            if (numberOfServersToScaleOutWithActivatedPods <= 0) {
+                logger.info("No need to scale out, inactive pods can handle the target server count.");
+                return;
+            }
+            // The other protocols may already have grown the deployment from the same snapshot
+            var replicasToAdd = scalingGate.unclaimed(sanitizedK8AppLabel, snapshot, numberOfServersToScaleOutWithActivatedPods);
+            if (replicasToAdd <= 0) {
+                logger.info("No need to scale out, another protocol already added the replicas for this pass.");
+                return;
+            }
+            // Replicas are added as a delta, an absolute target would overwrite the scaling of the other rebalancer shards
+            k8AutoScaler.changeDeploymentReplicas(sanitizedK8AppLabel, "default", replicasToAdd);
+        });
     }
 
     private String sanitizeEnvVariable(String envVariable) {
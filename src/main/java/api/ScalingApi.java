@@ -2,14 +2,20 @@ package api;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import domain.GrpcSessionService;
-import domain.SseSessionService;
-import domain.WsSessionService;
+import domain.ClusterSnapshot;
+import domain.ClusterSnapshotService;
+import domain.DropLedger;
 import domain.utils.AutoScaler;
 import domain.utils.K8AutoScaler;
+import domain.utils.ProtocolTaskRunner;
+import domain.utils.ScalingGate;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 @ApplicationScoped
 public class ScalingApi {
 
@@ -32,68 +38,157 @@ public class ScalingApi {
     private GrpcSessionApi grpcSessionApi;
 
     @Inject
-    private WsSessionService wsSessionService;
+    private ClusterSnapshotService clusterSnapshotService;
 
     @Inject
-    private SseSessionService sseSessionService;
+    AutoScaler autoScaler;
 
     @Inject
-    private GrpcSessionService grpcSessionService;
+    K8AutoScaler k8AutoScaler;    
 
     @Inject
-    AutoScaler autoScaler;
+    DropLedger dropLedger;
 
     @Inject
-    K8AutoScaler k8AutoScaler;    
+    ProtocolTaskRunner protocolTaskRunner;
+
+    @Inject
+    ScalingGate scalingGate;
+
+    private final AtomicBoolean balanceRunning = new AtomicBoolean();
+    private final AtomicBoolean balanceRequested = new AtomicBoolean();
+
+    public List<DropLedger.InFlightDrop> inFlightDrops() {
+        return dropLedger.inFlightDrops();
+    }
+
+    /**
+     * Runs a balance pass. A call made while a pass is running, e.g. an event-driven one during the
+     * scheduled one, is coalesced into a single extra pass that starts when the running one ends.
+     * @return The snapshot the last pass analyzed, null when the call was coalesced into a running pass
+     */
+    public ClusterSnapshot analyzeSessionServerBalance() {
+        ClusterSnapshot snapshot = null;
+        balanceRequested.set(true);
+        do {
+            if (!balanceRunning.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                while (balanceRequested.getAndSet(false)) {
+                    snapshot = runBalancePass();
+                }
+            } finally {
+                balanceRunning.set(false);
+            }
+        } while (balanceRequested.get());
+        return snapshot;
+    }
+
+    private ClusterSnapshot runBalancePass() {
+        var sanitizedEnvType = sanitizeEnvVariable(environmentType);
+        if (sanitizedEnvType.equalsIgnoreCase("container_runtime")) {
+            var snapshot = clusterSnapshotService.captureForContainerRuntime();
+            protocolTaskRunner.runAll("balance", ProtocolTaskRunner.branches(
+                    "ws", () -> wsSessionApi.analyzeSessionServerBalanceForContainerRuntime(snapshot),
+                    "sse", () -> sseSessionApi.analyzeSessionServerBalanceForContainerRuntime(snapshot),
+                    "grpc", () -> grpcSessionApi.analyzeSessionServerBalanceForContainerRuntime(snapshot)));
+            return snapshot;
+        }
+        if (sanitizedEnvType.equalsIgnoreCase("k8s")) {
+            var snapshot = clusterSnapshotService.captureForKubernetes();
+            protocolTaskRunner.runAll("balance", ProtocolTaskRunner.branches(
+                    "ws", () -> wsSessionApi.analyzeSessionServerBalanceForKubernetesEnvs(snapshot),
+                    "sse", () -> sseSessionApi.analyzeSessionServerBalanceForKubernetesEnvs(snapshot),
+                    "grpc", () -> grpcSessionApi.analyzeSessionServerBalanceForKubernetesEnvs(snapshot)));
+            return snapshot;
+        }
+        return null;
+    }
 
-    public void analyzeSessionServerBalance() {
-        wsSessionApi.analyzeSessionServerBalance();
-        sseSessionApi.analyzeSessionServerBalance();
-        grpcSessionApi.analyzeSessionServerBalance();
+    /**
+     * @return The snapshot the utilization analysis ran on, null outside container_runtime and k8s
+     */
+    public ClusterSnapshot analyzeSessionServerUtilization() {
+        var sanitizedEnvType = sanitizeEnvVariable(environmentType);
+        if (sanitizedEnvType.equalsIgnoreCase("container_runtime")) {
+            // One Redis read and one Consul listing per app for the whole tick
+            var snapshot = clusterSnapshotService.captureForContainerRuntime();
+            protocolTaskRunner.runAll("utilization", ProtocolTaskRunner.branches(
+                    "ws", () -> wsSessionApi.analyzeSessionServerUtilizationForContainerRuntimeEnvs(snapshot),
+                    "sse", () -> sseSessionApi.analyzeSessionServerUtilizationForContainerRuntimeEnvs(snapshot),
+                    "grpc", () -> grpcSessionApi.analyzeSessionServerUtilizationForContainerRuntimeEnvs(snapshot)));
+            killContainerRuntimeServersWithNoSessions(snapshot);
+            return snapshot;
+        }
+        if (sanitizedEnvType.equalsIgnoreCase("k8s")) {
+            var snapshot = clusterSnapshotService.captureForKubernetes();
+            protocolTaskRunner.runAll("utilization", ProtocolTaskRunner.branches(
+                    "ws", () -> wsSessionApi.analyzeSessionServerUtilizationForKubernetesEnvs(snapshot),
+                    "sse", () -> sseSessionApi.analyzeSessionServerUtilizationForKubernetesEnvs(snapshot),
+                    "grpc", () -> grpcSessionApi.analyzeSessionServerUtilizationForKubernetesEnvs(snapshot)));
+            killK8ServersWithNoSessions(snapshot);
+            return snapshot;
+        }
+        return null;
     }
 
-    public void analyzeSessionServerUtilization() {
+    /**
+     * Reactive variant of {@link #analyzeSessionServerUtilization()}. Redis is read without holding a
+     * thread and the protocols overlap their I/O; only the steps calling the orchestrator are offloaded.
+     * @return The snapshot the utilization analysis ran on, null outside container_runtime and k8s
+     */
+    public Uni<ClusterSnapshot> analyzeSessionServerUtilizationAsync() {
         var sanitizedEnvType = sanitizeEnvVariable(environmentType);
         if (sanitizedEnvType.equalsIgnoreCase("container_runtime")) {
-            var consulActiveServices = sseSessionService.getConsulActiveServices(sanitizeEnvVariable(containerRuntimeAppName));
-            var consulInactiveServices = sseSessionService.getConsulInactiveServices(sanitizeEnvVariable(containerRuntimeAppName));
-            var activeAndInactiveServicesCount = consulActiveServices.size() + consulInactiveServices.size();
-            wsSessionApi.analyzeSessionServerUtilizationForContainerRuntimeEnvs();
-            sseSessionApi.analyzeSessionServerUtilizationForContainerRuntimeEnvs();
-            grpcSessionApi.analyzeSessionServerUtilizationForContainerRuntimeEnvs();
-            killContainerRuntimeServersWithNoSessions(activeAndInactiveServicesCount);
+            return clusterSnapshotService.captureForContainerRuntimeAsync().flatMap(snapshot -> protocolTaskRunner.joinAll("utilization",
+                    ProtocolTaskRunner.branches(
+                            "ws", wsSessionApi.analyzeSessionServerUtilizationForContainerRuntimeEnvsAsync(snapshot),
+                            "sse", sseSessionApi.analyzeSessionServerUtilizationForContainerRuntimeEnvsAsync(snapshot),
+                            "grpc", grpcSessionApi.analyzeSessionServerUtilizationForContainerRuntimeEnvsAsync(snapshot)))
+                    .flatMap(ignored -> protocolTaskRunner.offload(() -> killContainerRuntimeServersWithNoSessions(snapshot)))
+                    .replaceWith(snapshot));
         }
         if (sanitizedEnvType.equalsIgnoreCase("k8s")) {
-            var activePods = k8AutoScaler.getPodsWithLabel("default", "traffic", "active");
-            var inactivePods = k8AutoScaler.getPodsWithLabel("default", "traffic", "inactive");
-            var activeAndInactivePodsCount = activePods.size() + inactivePods.size();
-            wsSessionApi.analyzeSessionServerUtilizationForKubernetesEnvs();
-            sseSessionApi.analyzeSessionServerUtilizationForKubernetesEnvs();
-            grpcSessionApi.analyzeSessionServerUtilizationForKubernetesEnvs();
-            killK8ServersWithNoSessions(activeAndInactivePodsCount);
+            return clusterSnapshotService.captureForKubernetesAsync().flatMap(snapshot -> protocolTaskRunner.joinAll("utilization",
+                    ProtocolTaskRunner.branches(
+                            "ws", wsSessionApi.analyzeSessionServerUtilizationForKubernetesEnvsAsync(snapshot),
+                            "sse", sseSessionApi.analyzeSessionServerUtilizationForKubernetesEnvsAsync(snapshot),
+                            "grpc", grpcSessionApi.analyzeSessionServerUtilizationForKubernetesEnvsAsync(snapshot)))
+                    .flatMap(ignored -> protocolTaskRunner.offload(() -> killK8ServersWithNoSessions(snapshot)))
+                    .replaceWith(snapshot));
         }
+        return Uni.createFrom().nullItem();
     }
 
-    public void killContainerRuntimeServersWithNoSessions(int activeAndInactiveServicesCount) {
-        var wsSessions = wsSessionService.findAllSessions();
-        var sseSessions = sseSessionService.findAllSessions();
-        var grpcSessions = grpcSessionService.findAllSessions();
+    public void killContainerRuntimeServersWithNoSessions(ClusterSnapshot snapshot) {
+        var activeAndInactiveServicesCount = snapshot.consulActiveServices().size() + snapshot.consulInactiveServices().size()
+                + clusterSnapshotService.serversOutsideShard();
 
-        if (wsSessions.isEmpty() && sseSessions.isEmpty() && grpcSessions.isEmpty() && activeAndInactiveServicesCount > 1) {
-            autoScaler.scaleOut(1, sanitizeEnvVariable(containerRuntimeAppName));
+        if (isClusterIdle(snapshot) && activeAndInactiveServicesCount > 1) {
+            var appName = sanitizeEnvVariable(containerRuntimeAppName);
+            scalingGate.run(appName, () -> autoScaler.scaleOut(1, appName));
         }
     }
 
-    public void killK8ServersWithNoSessions(int activeAndInactivePodsCount) {
-        var wsSessions = wsSessionService.findAllSessions();
-        var sseSessions = sseSessionService.findAllSessions();
-        var grpcSessions = grpcSessionService.findAllSessions();
+    public void killK8ServersWithNoSessions(ClusterSnapshot snapshot) {
+        var activeAndInactivePodsCount = snapshot.activePods().size() + snapshot.inactivePods().size()
+                + clusterSnapshotService.serversOutsideShard();
 
-        if (wsSessions.isEmpty() && sseSessions.isEmpty() && grpcSessions.isEmpty() && activeAndInactivePodsCount > 1) {
-            k8AutoScaler.patchDeploymentReplicas(sanitizeEnvVariable(kubernetesAppLabel), "default", 1);
+        if (isClusterIdle(snapshot) && activeAndInactivePodsCount > 1) {
+            var appLabel = sanitizeEnvVariable(kubernetesAppLabel);
+            scalingGate.run(appLabel, () -> k8AutoScaler.patchDeploymentReplicas(appLabel, "default", 1));
         }
     }
 
+    /**
+     * With sharded rebalancing the snapshot only covers this replica's shard, the other shards are
+     * read from their reported totals and only one replica scales the idle cluster down.
+     */
+    private boolean isClusterIdle(ClusterSnapshot snapshot) {
+        return snapshot.hasNoSessions() && !clusterSnapshotService.hasSessionsOutsideShard() && clusterSnapshotService.actsForCluster();
+    }
+
     private String sanitizeEnvVariable(String envVariable) {
         return envVariable.trim().replaceAll("^\"|\"$", "");
     }    
@@ -2,13 +2,19 @@ package api;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import domain.ClusterSnapshot;
+import domain.ClusterSnapshotService;
+import domain.DropLedger;
 import domain.PersistentSession;
+import domain.SessionTopology;
 import domain.WsSessionService;
 import domain.WsSessionUtilization;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -19,6 +25,9 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import domain.utils.AutoScaler;
 import domain.utils.K8AutoScaler;
+import domain.utils.ProtocolTaskRunner;
+import domain.utils.RebalancePlanner;
+import domain.utils.ScalingGate;
 import infrastructure.resources.rest.dto.ConsulService;
 import io.fabric8.kubernetes.api.model.Pod;
 
@@ -65,6 +74,18 @@ public class WsSessionApi {
     @Inject
     K8AutoScaler k8AutoScaler;
 
+    @Inject
+    ClusterSnapshotService clusterSnapshotService;
+
+    @Inject
+    DropLedger dropLedger;
+
+    @Inject
+    ProtocolTaskRunner protocolTaskRunner;
+
+    @Inject
+    ScalingGate scalingGate;
+
     public WsSessionApi(ObjectMapper objectMapper, WsSessionService wsSessionService) {
         this.objectMapper = objectMapper;
         this.wsSessionService = wsSessionService;
@@ -95,14 +116,17 @@ public class WsSessionApi {
 
     
     public void analyzeSessionServerUtilizationForKubernetesEnvs() {
+        analyzeSessionServerUtilizationForKubernetesEnvs(clusterSnapshotService.captureForKubernetes());
+    }
+
+    public void analyzeSessionServerUtilizationForKubernetesEnvs(ClusterSnapshot snapshot) {
         var sanitizedK8AppLabel = sanitizeEnvVariable(KUBERNETES_APP_LABEL);
-        var wsSessions = wsSessionService.findAllSessions();
         logger.info("Initiating analysis");        
-        var activePods = k8AutoScaler.getPodsWithLabel("default", "traffic", "active");
-        var inactivePods = k8AutoScaler.getPodsWithLabel("default", "traffic", "inactive");
+        var activePods = snapshot.activePods();
+        var inactivePods = snapshot.inactivePods();
         logger.info("List of active pods with name starting with " + sanitizedK8AppLabel + ": " + objectMapper.valueToTree(activePods).toString());
         logger.info("List of inactive pods with name starting with " + sanitizedK8AppLabel + ": " + objectMapper.valueToTree(inactivePods).toString());
-        var cachedSessionUtilizationMap = wsSessionService.retrieveServerSessionUtilization(wsSessions);
+        var cachedSessionUtilizationMap = wsSessionService.retrieveServerSessionUtilization(snapshot.wsSessionsPerHost());
         Map<String, Integer> utilizationMapPercentMap = cachedSessionUtilizationMap.entrySet().stream()
                .map(p -> {
                 return Map.of(p.getKey(), (int) (((float)p.getValue().activeSessions() / p.getValue().maxSessions()) * 100));
@@ -112,7 +136,7 @@ public class WsSessionApi {
 
         logger.info("Cached Session Map: " + objectMapper.valueToTree(cachedSessionUtilizationMap));
 
-        if (wsSessions.isEmpty()) {
+        if (cachedSessionUtilizationMap.isEmpty()) {
             logger.log(Level.INFO, "No Websocket Sessions to analyze");
             return;
         }        
@@ -135,7 +159,7 @@ public class WsSessionApi {
         if (overallUtilizationPercent > MAX_UTILIZATION_PERCENT) {            
             var maxTargetServerTreshold = Math.ceil(overrallActiveSessions / ((float)MAX_SESSIONS_PER_SERVER * ((float)MAX_UTILIZATION_PERCENT / 100.0)));
             numberOfServersToScaleOut = (int)maxTargetServerTreshold - activePods.size();           
-            scaleOutK8Servers(numberOfServersToScaleOut, activePods, inactivePods);
+            scaleOutK8Servers(snapshot, numberOfServersToScaleOut, activePods, inactivePods);
         }
 
         if (overallUtilizationPercent < MIN_UTILIZATION_PERCENT) {
@@ -156,16 +180,19 @@ public class WsSessionApi {
         }
 
         if(numberOfServersToScaleIn == 0 && numberOfServersToScaleOut == 0) {
-            killK8ServersWithNoSessions(utilizationMapPercentMap, activePods, inactivePods);
+            killK8ServersWithNoSessions(snapshot, utilizationMapPercentMap, activePods, inactivePods);
         }
     }
 
     public void analyzeSessionServerUtilizationForContainerRuntimeEnvs() {
-        var wsSessions = wsSessionService.findAllSessions();
-        var sessionUtilizationMap = wsSessionService.retrieveServerSessionUtilization(wsSessions);
-        var consulActiveServices = wsSessionService.getConsulActiveServices(sanitizeEnvVariable(containerRuntimeAppName));
-        var consulInactiveServices = wsSessionService.getConsulInactiveServices(sanitizeEnvVariable(containerRuntimeAppName));
-        if (wsSessions.isEmpty()) {
+        analyzeSessionServerUtilizationForContainerRuntimeEnvs(clusterSnapshotService.captureForContainerRuntime());
+    }
+
+    public void analyzeSessionServerUtilizationForContainerRuntimeEnvs(ClusterSnapshot snapshot) {
+        var sessionUtilizationMap = wsSessionService.retrieveServerSessionUtilization(snapshot.wsSessionsPerHost());
+        var consulActiveServices = snapshot.consulActiveServices();
+        var consulInactiveServices = snapshot.consulInactiveServices();
+        if (sessionUtilizationMap.isEmpty()) {
             logger.log(Level.INFO, "No Websocket Sessions to analyze");
             return;
         }        
@@ -198,7 +225,7 @@ public class WsSessionApi {
             var maxTargetServerTreshold = Math.ceil(overrallActiveSessions / ((float)MAX_SESSIONS_PER_SERVER * ((float)MAX_UTILIZATION_PERCENT / 100.0)));
             numberOfServersToScaleOut = (int)maxTargetServerTreshold - consulActiveServices.size();
             var targetServerCount = consulActiveServices.size() + (int)numberOfServersToScaleOut;            
-            scaleOutSessionServers(targetServerCount, numberOfServersToScaleOut, consulInactiveServices, consulActiveServices);
+            scaleOutSessionServers(snapshot, targetServerCount, numberOfServersToScaleOut, consulInactiveServices, consulActiveServices);
         }
 
         if (overallUtilizationPercent < MIN_UTILIZATION_PERCENT) {
@@ -228,35 +255,60 @@ public class WsSessionApi {
         logger.info("Utilization Percent Map: " + utilizationMapPercentMap.toString());
 
         if(numberOfServersToScaleIn == 0 && numberOfServersToScaleOut == 0) {
-            killServersWithNoSessions(utilizationMapPercentMap, consulActiveServices);
+            killServersWithNoSessions(utilizationMapPercentMap, consulInactiveServices);
         }
     }
 
-    public void killK8ServersWithNoSessions(Map<String, Integer> utilizationMapPercentMap, List<Pod> activePods, List<Pod> inactivePods) {
-        Integer podsMarkedForDeletion = 0;
-        for (Pod pod : inactivePods) {
-           var isThereAnySessionConnectedToInactiveService = utilizationMapPercentMap.containsKey(pod.getStatus().getPodIP()) && utilizationMapPercentMap.get(pod.getStatus().getPodIP()) > 0;
-            if (!isThereAnySessionConnectedToInactiveService) {
-                k8AutoScaler.patchPodAnnotation(pod.getMetadata().getName(), pod.getMetadata().getNamespace(), "controller.kubernetes.io/pod-deletion-cost", "-100");
-                podsMarkedForDeletion++;
+    /**
+     * Reactive variant of {@link #analyzeSessionServerUtilizationForKubernetesEnvs()}: the snapshot is
+     * captured without blocking, and the analysis, whose scaling calls use the blocking orchestrator
+     * clients, runs on its own virtual thread.
+     */
+    public Uni<Void> analyzeSessionServerUtilizationForKubernetesEnvsAsync() {
+        return clusterSnapshotService.captureForKubernetesAsync().flatMap(this::analyzeSessionServerUtilizationForKubernetesEnvsAsync);
+    }
+
+    public Uni<Void> analyzeSessionServerUtilizationForKubernetesEnvsAsync(ClusterSnapshot snapshot) {
+        return protocolTaskRunner.offload(() -> analyzeSessionServerUtilizationForKubernetesEnvs(snapshot));
+    }
+
+    public Uni<Void> analyzeSessionServerUtilizationForContainerRuntimeEnvsAsync() {
+        return clusterSnapshotService.captureForContainerRuntimeAsync().flatMap(this::analyzeSessionServerUtilizationForContainerRuntimeEnvsAsync);
+    }
+
+    public Uni<Void> analyzeSessionServerUtilizationForContainerRuntimeEnvsAsync(ClusterSnapshot snapshot) {
+        return protocolTaskRunner.offload(() -> analyzeSessionServerUtilizationForContainerRuntimeEnvs(snapshot));
+    }
+
+    public void killK8ServersWithNoSessions(ClusterSnapshot snapshot, Map<String, Integer> utilizationMapPercentMap, List<Pod> activePods, List<Pod> inactivePods) {
+        scalingGate.run(sanitizeEnvVariable(KUBERNETES_APP_LABEL), () -> {
+            Integer podsMarkedForDeletion = 0;
+            for (Pod pod : inactivePods) {
+               var isThereAnySessionConnectedToInactiveService = utilizationMapPercentMap.containsKey(pod.getStatus().getPodIP()) && utilizationMapPercentMap.get(pod.getStatus().getPodIP()) > 0;
+                if (!isThereAnySessionConnectedToInactiveService) {
+                    k8AutoScaler.patchPodAnnotation(pod.getMetadata().getName(), pod.getMetadata().getNamespace(), "controller.kubernetes.io/pod-deletion-cost", "-100");
+                    podsMarkedForDeletion++;
+                }
             }
-        }
-        if(podsMarkedForDeletion > 0){
-            var targetServerCount = activePods.size() + inactivePods.size() - podsMarkedForDeletion;
-            k8AutoScaler.patchDeploymentReplicas(sanitizeEnvVariable(KUBERNETES_APP_LABEL), "default", targetServerCount);
-        }
-        logger.info("Pods marked for deletion: " + podsMarkedForDeletion);
+            if(podsMarkedForDeletion > 0){
+                // Each protocol marks the pods idle for its own sessions, the deployment shrinks once per snapshot
+                var replicasToRemove = scalingGate.unclaimed(sanitizeEnvVariable(KUBERNETES_APP_LABEL), snapshot, -podsMarkedForDeletion);
+                // Pods are removed as a delta, an absolute target would overwrite the scaling of the other rebalancer shards
+                k8AutoScaler.changeDeploymentReplicas(sanitizeEnvVariable(KUBERNETES_APP_LABEL), "default", replicasToRemove);
+            }
+            logger.info("Pods marked for deletion: " + podsMarkedForDeletion);
+        });
     }       
 
 
-    public void killServersWithNoSessions(Map<String, Integer> utilizationMapPercentMap, List<ConsulService> consulActiveServices) {
-        var consulInactiveServices = wsSessionService.getConsulInactiveServices(sanitizeEnvVariable(containerRuntimeAppName));
-        
-        consulInactiveServices.forEach(service -> {
-            var isThereAnySessionConnectedToInactiveService = utilizationMapPercentMap.containsKey(service.Service.Address) && utilizationMapPercentMap.get(service.Service.Address) > 0;
-            if (!isThereAnySessionConnectedToInactiveService) {
-                autoScaler.stopSpecificContainer(service.Service.Address);
-            }
+    public void killServersWithNoSessions(Map<String, Integer> utilizationMapPercentMap, List<ConsulService> consulInactiveServices) {
+        scalingGate.run(sanitizeEnvVariable(containerRuntimeAppName), () -> {
+            consulInactiveServices.forEach(service -> {
+                var isThereAnySessionConnectedToInactiveService = utilizationMapPercentMap.containsKey(service.Service.Address) && utilizationMapPercentMap.get(service.Service.Address) > 0;
+                if (!isThereAnySessionConnectedToInactiveService) {
+                    autoScaler.stopSpecificContainer(service.Service.Address);
+                }
+            });
         });
     }       
 
@@ -274,13 +326,16 @@ public class WsSessionApi {
     }
 
     public void analyzeSessionServerBalanceForKubernetesEnvs() {
+        analyzeSessionServerBalanceForKubernetesEnvs(clusterSnapshotService.captureForKubernetes());
+    }
+
+    public void analyzeSessionServerBalanceForKubernetesEnvs(ClusterSnapshot snapshot) {
         Logger.getLogger(WsSessionApi.class.getName()).info("Rebalancing started");
         var sanitizedK8AppLabel = sanitizeEnvVariable(KUBERNETES_APP_LABEL);
-        var wsSessions = wsSessionService.findAllSessions();
-        var wsSessionUtilizationMap = wsSessionService.retrieveServerSessionUtilization(wsSessions);
-        var activePods = k8AutoScaler.getPodsWithLabel("default", "traffic", "active");
+        var wsSessionUtilizationMap = wsSessionService.retrieveServerSessionUtilization(snapshot.wsSessionsPerHost());
+        var activePods = snapshot.activePods();
         // var inactivePods = k8AutoScaler.getPodsWithLabel("default", "traffic", "inactive");
-        if (wsSessions.isEmpty()) {
+        if (wsSessionUtilizationMap.isEmpty()) {
             logger.info("No Sessions to rebalance");
             return;
         }
@@ -319,13 +374,7 @@ public class WsSessionApi {
                underUtilizedServers.put(server, utilizationMapPercentMap.get(server));
        });
 
-       var sortedOverUtilizedServers = overUtilizedServers.entrySet().stream()
-               .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-               .toList();
 
-       var sortedUnderUtilizedServers = underUtilizedServers.entrySet().stream()
-               .sorted(Comparator.comparingInt(Map.Entry::getValue))
-               .toList();
 
       logger.info("Rebalancing Summary:  Overutilized Servers: " + overUtilizedServers.toString() + 
                   ", Underutilized Servers: " + underUtilizedServers.toString() + 
@@ -333,21 +382,26 @@ public class WsSessionApi {
                   "Overall Active Sessions: " + overrallActiveSessions);
       logger.info("Utilization Percent Map: " + utilizationMapPercentMap.toString());
 
-       sortedOverUtilizedServers.forEach(s -> {
-          double maxSessions = wsSessionUtilizationMap.get(s.getKey()).maxSessions();
-          double activeSessions = wsSessionUtilizationMap.get(s.getKey()).activeSessions();
-          double activeSessionAverageTreshold = Math.ceil((maxSessions * ((double)overrallUtilizationPercent/100)));
-          int numberOfsessionsToOffload= (int)(activeSessions - activeSessionAverageTreshold);        
-          offLoadSessions(s.getKey(), numberOfsessionsToOffload);
-       });        
-
+       // Water-fill the overutilized servers down to the balanced level, moving no more sessions than the
+       // underutilized servers have room for, and publish the whole pass as one drop command
+       // Only active hosts take part, draining hosts are emptied by the scale-in path instead
+       var activeServers = activePods.stream().map(pod -> pod.getStatus().getPodIP()).filter(ip -> ip != null).collect(Collectors.toSet());
+       Map<String, RebalancePlanner.HostLoad> hostLoads = new HashMap<>();
+       activeServers.forEach(server -> hostLoads.put(server, new RebalancePlanner.HostLoad(
+               wsSessionUtilizationMap.containsKey(server) ? wsSessionUtilizationMap.get(server).activeSessions() : 0, MAX_SESSIONS_PER_SERVER)));
+       var rebalancePlan = RebalancePlanner.plan(hostLoads, overUtilizedServers.keySet(), underUtilizedServers.keySet());
+       logger.info("WebSocket rebalance plan: " + rebalancePlan.sessionsMoved() + " sessions, transfers " + rebalancePlan.transfers());
+       offLoadSessions(new LinkedHashMap<>(rebalancePlan.dropsPerHost()), snapshot.wsSessionsPerHost());
     }
 
     public void analyzeSessionServerBalanceForContainerRuntime() {
-        var wsSessions = wsSessionService.findAllSessions();
-        var wsSessionUtilizationMap = wsSessionService.retrieveServerSessionUtilization(wsSessions);
-        var consulActiveServices = wsSessionService.getConsulActiveServices(sanitizeEnvVariable(containerRuntimeAppName));
-        if (wsSessions.isEmpty()) {
+        analyzeSessionServerBalanceForContainerRuntime(clusterSnapshotService.captureForContainerRuntime());
+    }
+
+    public void analyzeSessionServerBalanceForContainerRuntime(ClusterSnapshot snapshot) {
+        var wsSessionUtilizationMap = wsSessionService.retrieveServerSessionUtilization(snapshot.wsSessionsPerHost());
+        var consulActiveServices = snapshot.consulActiveServices();
+        if (wsSessionUtilizationMap.isEmpty()) {
             logger.info("No Sessions to rebalance");
             return;
         }
@@ -386,13 +440,7 @@ public class WsSessionApi {
                underUtilizedServers.put(server, utilizationMapPercentMap.get(server));
        });
 
-       var sortedOverUtilizedServers = overUtilizedServers.entrySet().stream()
-               .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-               .toList();
 
-       var sortedUnderUtilizedServers = underUtilizedServers.entrySet().stream()
-               .sorted(Comparator.comparingInt(Map.Entry::getValue))
-               .toList();
 
       logger.info("Rebalancing Summary:  Overutilized Servers: " + overUtilizedServers.toString() + 
                   ", Underutilized Servers: " + underUtilizedServers.toString() + 
@@ -400,92 +448,120 @@ public class WsSessionApi {
                   "Overall Active Sessions: " + overrallActiveSessions);
       logger.info("Utilization Percent Map: " + utilizationMapPercentMap.toString());
 
-       sortedOverUtilizedServers.forEach(s -> {
-          double maxSessions = wsSessionUtilizationMap.get(s.getKey()).maxSessions();
-          double activeSessions = wsSessionUtilizationMap.get(s.getKey()).activeSessions();
-          double activeSessionAverageTreshold = Math.ceil((maxSessions * ((double)overrallUtilizationPercent/100)));
-          int numberOfsessionsToOffload= (int)(activeSessions - activeSessionAverageTreshold);        
-          offLoadSessions(s.getKey(), numberOfsessionsToOffload);
-       });
+       // Water-fill the overutilized servers down to the balanced level, moving no more sessions than the
+       // underutilized servers have room for, and publish the whole pass as one drop command
+       // Only active hosts take part, draining hosts are emptied by the scale-in path instead
+       var activeServers = consulActiveServices.stream().map(service -> service.Service.Address).collect(Collectors.toSet());
+       Map<String, RebalancePlanner.HostLoad> hostLoads = new HashMap<>();
+       activeServers.forEach(server -> hostLoads.put(server, new RebalancePlanner.HostLoad(
+               wsSessionUtilizationMap.containsKey(server) ? wsSessionUtilizationMap.get(server).activeSessions() : 0, MAX_SESSIONS_PER_SERVER)));
+       var rebalancePlan = RebalancePlanner.plan(hostLoads, overUtilizedServers.keySet(), underUtilizedServers.keySet());
+       logger.info("WebSocket rebalance plan: " + rebalancePlan.sessionsMoved() + " sessions, transfers " + rebalancePlan.transfers());
+       offLoadSessions(new LinkedHashMap<>(rebalancePlan.dropsPerHost()), snapshot.wsSessionsPerHost());
     }
 
-    private void offLoadSessions(String fromServerId, int numberOfSessions) {
-        logger.info("Offloading " + numberOfSessions + " sessions from server " + fromServerId);
-        wsSessionService.dropServerSessions(fromServerId, numberOfSessions);
+    private void offLoadSessions(Map<String, Integer> dropPlan, Map<String, Integer> sessionsPerHost) {
+        // Sessions a host was already told to drop and has not shed (or acknowledged) yet are part of its offload
+        var outstandingDrops = dropLedger.outstanding(SessionTopology.WS_PROTOCOL, sessionsPerHost);
+        var inFlightDrops = wsSessionService.inFlightDrops();
+        dropPlan.replaceAll((hostId, sessions) -> sessions
+                - Math.max(outstandingDrops.getOrDefault(hostId, 0), inFlightDrops.getOrDefault(hostId, 0)));
+        dropPlan.values().removeIf(sessions -> sessions <= 0);
+        if (dropPlan.isEmpty()) {
+            return;
+        }
+        logger.info("Offloading sessions per server: " + dropPlan);
+        wsSessionService.sendAdminCommand(dropPlan);
+        dropLedger.record(SessionTopology.WS_PROTOCOL, dropPlan, sessionsPerHost);
     }
 
 
     public void scaleInK8SessionServers(int numberOfServers, Map<String, Integer> serverUtilization, List<Pod> activePods) {
         var sanitizedK8AppLabel = sanitizeEnvVariable(KUBERNETES_APP_LABEL);
-        System.out.println("Scaling in WebSocket session servers...");
-        System.out.println("Number of servers to scale in: " + numberOfServers + " active pods: " + activePods.size() + " server utilization map: " + serverUtilization.toString());
+        scalingGate.run(sanitizedK8AppLabel, () -> {
+            System.out.println("Scaling in WebSocket session servers...");
+            System.out.println("Number of servers to scale in: " + numberOfServers + " active pods: " + activePods.size() + " server utilization map: " + serverUtilization.toString());
 
-        // Placeholder for scaling in logic
-        var sortedActivePods = activePods.stream()
-            .sorted(Comparator.comparingInt(p -> serverUtilization.getOrDefault(p.getStatus().getPodIP(), 0)))
-            .toList();
+            // Placeholder for scaling in logic
+            var sortedActivePods = activePods.stream()
+                .sorted(Comparator.comparingInt(p -> serverUtilization.getOrDefault(p.getStatus().getPodIP(), 0)))
+                .toList();
 
-        System.out.println("Sorted active pods by utilization: " + sortedActivePods.stream().map(p -> p.getStatus().getPodIP() + ":" + serverUtilization.getOrDefault(p.getStatus().getPodIP(), 0)).toList().toString());
+            System.out.println("Sorted active pods by utilization: " + sortedActivePods.stream().map(p -> p.getStatus().getPodIP() + ":" + serverUtilization.getOrDefault(p.getStatus().getPodIP(), 0)).toList().toString());
 
-        var podsToScaleIn = sortedActivePods.stream()
-            .limit(numberOfServers)
-            .toList();
+            var podsToScaleIn = sortedActivePods.stream()
+                .limit(numberOfServers)
+                .toList();
 
-        System.out.println("Pods selected to scale in: " + podsToScaleIn.stream().map(p -> p.getMetadata().getName()).toList().toString());
+            System.out.println("Pods selected to scale in: " + podsToScaleIn.stream().map(p -> p.getMetadata().getName()).toList().toString());
 
-            podsToScaleIn.forEach(pod -> {
-                logger.info("Cordoning pod " + pod.getMetadata().getName() + " with IP " + pod.getStatus().getPodIP());
-                // Need to implement a path to update the pod label to a draining status so that it gets cordoned/removed from load balancing rotation                        
-                k8AutoScaler.patchPodLabel(pod.getMetadata().getName(), pod.getMetadata().getNamespace(), "traffic", "inactive");
-            });
+                podsToScaleIn.forEach(pod -> logger.info("Cordoning pod " + pod.getMetadata().getName() + " with IP " + pod.getStatus().getPodIP()));
+                // Flip the traffic label of all selected pods in one concurrent burst so they leave load balancing rotation together
+                k8AutoScaler.patchPodLabels(podsToScaleIn, "traffic", "inactive");
+        });
     }
 
     public void scaleInSessionServers(int numberOfServers, Map<String, Integer> serverUtilization) {
-        System.out.println("Scaling in WebSocket session servers...");
-        autoScaler.scaleIn(numberOfServers, serverUtilization, sanitizeEnvVariable(containerRuntimeAppName));
-        // Send command to docker or k8s orchestrator to cordon/remove server from load balancer
-        // NOTE: Cordon server with the least number of active sessions
+        scalingGate.run(sanitizeEnvVariable(containerRuntimeAppName), () -> {
+            System.out.println("Scaling in WebSocket session servers...");
+            autoScaler.scaleIn(numberOfServers, serverUtilization, sanitizeEnvVariable(containerRuntimeAppName));
+            // Send command to docker or k8s orchestrator to cordon/remove server from load balancer
+            // NOTE: Cordon server with the least number of active sessions
+        });
     }
 
 
 
-    public void scaleOutK8Servers(int numberOfServersToScaleOut, List<Pod> activePods, List<Pod> inactivePods) {
+    public void scaleOutK8Servers(ClusterSnapshot snapshot, int numberOfServersToScaleOut, List<Pod> activePods, List<Pod> inactivePods) {
         var sanitizedK8AppLabel = sanitizeEnvVariable(KUBERNETES_APP_LABEL);
-        var targetServerCount = activePods.size() + numberOfServersToScaleOut;
-        
-        
-        // Reactivate inactive pods first, then scale out with new pods if needed...
-        inactivePods.stream()
-            .limit(numberOfServersToScaleOut)
-            .forEach(pod -> {
-                logger.info("Activating inactive pod " + pod.getMetadata().getName());
-                // Need to implement a path to update the pod label back to KUBERNETES_APP_LABEL so that it gets considered back into load balancing rotation                        
-                k8AutoScaler.patchPodLabel(pod.getMetadata().getName(), pod.getMetadata().getNamespace(), "traffic", "active");
-            });
+        scalingGate.run(sanitizedK8AppLabel, () -> {
+            var targetServerCount = activePods.size() + numberOfServersToScaleOut;
 
-        var numberOfServersToScaleOutWithActivatedPods = activePods.size() + inactivePods.size() >= targetServerCount ? 0 : targetServerCount - (activePods.size() + inactivePods.size());
-        if(numberOfServersToScaleOutWithActivatedPods <= 0){
-            logger.info("No need to scale out, inactive pods can handle the target server count.");
-            return;
-        }
-        k8AutoScaler.patchDeploymentReplicas(sanitizedK8AppLabel, "default", targetServerCount);
+
+            // Reactivate inactive pods first, then scale out with new pods if needed...
+            var podsToActivate = inactivePods.stream()
+                .limit(numberOfServersToScaleOut)
+                .toList();
+            podsToActivate.forEach(pod -> logger.info("Activating inactive pod " + pod.getMetadata().getName()));
+            k8AutoScaler.patchPodLabels(podsToActivate, "traffic", "active");
+
+            var numberOfServersToScaleOutWithActivatedPods = activePods.size() + inactivePods.size() >= targetServerCount ? 0 : targetServerCount - (activePods.size() + inactivePods.size());
+            if(numberOfServersToScaleOutWithActivatedPods <= 0){
+                logger.info("No need to scale out, inactive pods can handle the target server count.");
+                return;
+            }
+            // The other protocols may already have grown the deployment from the same snapshot
+            var replicasToAdd = scalingGate.unclaimed(sanitizedK8AppLabel, snapshot, numberOfServersToScaleOutWithActivatedPods);
+            if (replicasToAdd <= 0) {
+                logger.info("No need to scale out, another protocol already added the replicas for this pass.");
+                return;
+            }
+            // Replicas are added as a delta, an absolute target would overwrite the scaling of the other rebalancer shards
+            k8AutoScaler.changeDeploymentReplicas(sanitizedK8AppLabel, "default", replicasToAdd);
+        });
     }
 
-    public void scaleOutSessionServers(int targetServerCount, int numberOfServersToScaleOut, List<ConsulService> consulInactiveServices, List<ConsulService> consulActiveServices) {
-        // Placeholder for scaling out logic     
-        consulInactiveServices.stream()
-            .limit(numberOfServersToScaleOut)
-            .forEach(service -> {
-                System.out.println("Activating inactive service " + service.Service.ID + " at " + service.Service.Address);
-                wsSessionService.toggleConsulService(service.Service.ID, "false", "Activating service due to scale out request");
-            });        
-        var numberOfServersToScaleOutWithActivatedServices = consulActiveServices.size() + consulInactiveServices.size() >= targetServerCount ? 0 : targetServerCount - (consulActiveServices.size() + consulInactiveServices.size());
-        if(numberOfServersToScaleOutWithActivatedServices <= 0){
-            System.out.println("No need to scale out, inactive services can handle the target server count.");
-            return;
-        } 
-        System.out.println("Scaling out WebSocket session servers...");
-        autoScaler.scaleOut(targetServerCount, sanitizeEnvVariable(containerRuntimeAppName));
+    public void scaleOutSessionServers(ClusterSnapshot snapshot, int targetServerCount, int numberOfServersToScaleOut, List<ConsulService> consulInactiveServices, List<ConsulService> consulActiveServices) {
+        scalingGate.run(sanitizeEnvVariable(containerRuntimeAppName), () -> {
+            // Placeholder for scaling out logic     
+            consulInactiveServices.stream()
+                .limit(numberOfServersToScaleOut)
+                .forEach(service -> {
+                    System.out.println("Activating inactive service " + service.Service.ID + " at " + service.Service.Address);
+                    wsSessionService.toggleConsulService(service.Service.ID, "false", "Activating service due to scale out request");
+                });        
+            var numberOfServersToScaleOutWithActivatedServices = consulActiveServices.size() + consulInactiveServices.size() >= targetServerCount ? 0 : targetServerCount - (consulActiveServices.size() + consulInactiveServices.size());
+            if(numberOfServersToScaleOutWithActivatedServices <= 0){
+                System.out.println("No need to scale out, inactive services can handle the target server count.");
+                return;
+            } 
+            System.out.println("Scaling out WebSocket session servers...");
+            // The WebSocket and SSE branches scale the same app, each from the same snapshot
+            var containersToAdd = scalingGate.unclaimed(sanitizeEnvVariable(containerRuntimeAppName), snapshot, numberOfServersToScaleOutWithActivatedServices);
+            if (containersToAdd > 0) {
+                autoScaler.scaleOutBy(containersToAdd, sanitizeEnvVariable(containerRuntimeAppName));
+            }
+        });
     }
 
     private String sanitizeEnvVariable(String envVariable) {
@@ -0,0 +1,75 @@
+package domain;
+
+import infrastructure.resources.rest.dto.ConsulService;
+import io.fabric8.kubernetes.api.model.Pod;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of the cluster captured once per rebalancer tick: sessions per host for
+ * every protocol plus the active/inactive instances of the orchestrator in use. The
+ * analysis and scaling paths of all protocols read from the same snapshot instead of
+ * going back to Redis, Consul or Kubernetes on their own.
+ */
+public record ClusterSnapshot(
+        Map<String, Integer> wsSessionsPerHost,
+        Map<String, Integer> sseSessionsPerHost,
+        Map<String, Integer> grpcSessionsPerHost,
+        List<ConsulService> consulActiveServices,
+        List<ConsulService> consulInactiveServices,
+        List<ConsulService> grpcConsulActiveServices,
+        List<ConsulService> grpcConsulInactiveServices,
+        List<Pod> activePods,
+        List<Pod> inactivePods) {
+
+    public ClusterSnapshot {
+        wsSessionsPerHost = Map.copyOf(wsSessionsPerHost);
+        sseSessionsPerHost = Map.copyOf(sseSessionsPerHost);
+        grpcSessionsPerHost = Map.copyOf(grpcSessionsPerHost);
+        consulActiveServices = List.copyOf(consulActiveServices);
+        consulInactiveServices = List.copyOf(consulInactiveServices);
+        grpcConsulActiveServices = List.copyOf(grpcConsulActiveServices);
+        grpcConsulInactiveServices = List.copyOf(grpcConsulInactiveServices);
+        activePods = List.copyOf(activePods);
+        inactivePods = List.copyOf(inactivePods);
+    }
+
+    /**
+     * @param ownsHost Whether a hostId (Consul service address or pod IP) belongs to the shard
+     * @return The part of the snapshot made of the hosts of one shard
+     */
+    public ClusterSnapshot forShard(Predicate<String> ownsHost) {
+        return new ClusterSnapshot(
+                inShard(wsSessionsPerHost, ownsHost),
+                inShard(sseSessionsPerHost, ownsHost),
+                inShard(grpcSessionsPerHost, ownsHost),
+                consulActiveServices.stream().filter(service -> ownsHost.test(hostId(service))).toList(),
+                consulInactiveServices.stream().filter(service -> ownsHost.test(hostId(service))).toList(),
+                grpcConsulActiveServices.stream().filter(service -> ownsHost.test(hostId(service))).toList(),
+                grpcConsulInactiveServices.stream().filter(service -> ownsHost.test(hostId(service))).toList(),
+                activePods.stream().filter(pod -> ownsHost.test(hostId(pod))).toList(),
+                inactivePods.stream().filter(pod -> ownsHost.test(hostId(pod))).toList());
+    }
+
+    public boolean hasNoSessions() {
+        return wsSessionsPerHost.isEmpty() && sseSessionsPerHost.isEmpty() && grpcSessionsPerHost.isEmpty();
+    }
+
+    private static Map<String, Integer> inShard(Map<String, Integer> sessionsPerHost, Predicate<String> ownsHost) {
+        return sessionsPerHost.entrySet().stream()
+                .filter(entry -> ownsHost.test(entry.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    // Sessions are keyed by the service address or pod IP, hosts without one yet fall back to their id
+    private static String hostId(ConsulService service) {
+        return service.Service.Address != null && !service.Service.Address.isBlank() ? service.Service.Address : service.Service.ID;
+    }
+
+    private static String hostId(Pod pod) {
+        return pod.getStatus() != null && pod.getStatus().getPodIP() != null ? pod.getStatus().getPodIP() : pod.getMetadata().getName();
+    }
+}
@@ -0,0 +1,220 @@
+package domain;
+
+import domain.utils.K8AutoScaler;
+import domain.utils.ProtocolTaskRunner;
+import infrastructure.redis.RedisShardCoordinator;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+@ApplicationScoped
+public class ClusterSnapshotService {
+
+    @ConfigProperty(name = "app.connection-rebalancer.container-runtime.app-name")
+    String containerRuntimeAppName;
+
+    @ConfigProperty(name = "app.connection-rebalancer.container-runtime.grpc-app-name")
+    String containerRuntimeGrpcAppName;
+
+    @Inject
+    WsSessionService wsSessionService;
+
+    @Inject
+    SseSessionService sseSessionService;
+
+    @Inject
+    GrpcSessionService grpcSessionService;
+
+    @Inject
+    K8AutoScaler k8AutoScaler;
+
+    @Inject
+    SessionTopology sessionTopology;
+
+    @Inject
+    ProtocolTaskRunner protocolTaskRunner;
+
+    @Inject
+    RedisShardCoordinator shardCoordinator;
+
+    ConsulServiceCatalog consulServiceCatalog;
+
+    public ClusterSnapshotService(ConsulServiceCatalog consulServiceCatalog) {
+        this.consulServiceCatalog = consulServiceCatalog;
+    }
+
+    /**
+     * Captures sessions per host and the Consul catalog of the session apps.
+     * The Consul catalog is read from the watched {@link ConsulServiceCatalog}, so each service
+     * is already split into active and inactive instances.
+     */
+    public ClusterSnapshot captureForContainerRuntime() {
+        var appName = sanitizeEnvVariable(containerRuntimeAppName);
+        var grpcAppName = sanitizeEnvVariable(containerRuntimeGrpcAppName);
+        var appCatalog = consulServiceCatalog.entry(appName);
+        var grpcAppCatalog = consulServiceCatalog.entry(grpcAppName);
+        var sessionsPerHost = sessionsPerHostByProtocol();
+
+        return inShard(new ClusterSnapshot(
+                sessionsPerHost.get(SessionTopology.WS_PROTOCOL),
+                sessionsPerHost.get(SessionTopology.SSE_PROTOCOL),
+                sessionsPerHost.get(SessionTopology.GRPC_PROTOCOL),
+                appCatalog.activeServices(),
+                appCatalog.inactiveServices(),
+                grpcAppCatalog.activeServices(),
+                grpcAppCatalog.inactiveServices(),
+                List.of(),
+                List.of()));
+    }
+
+    /**
+     * Captures sessions per host and the active/inactive tracker pods.
+     */
+    public ClusterSnapshot captureForKubernetes() {
+        var sessionsPerHost = sessionsPerHostByProtocol();
+
+        return inShard(new ClusterSnapshot(
+                sessionsPerHost.get(SessionTopology.WS_PROTOCOL),
+                sessionsPerHost.get(SessionTopology.SSE_PROTOCOL),
+                sessionsPerHost.get(SessionTopology.GRPC_PROTOCOL),
+                List.of(),
+                List.of(),
+                List.of(),
+                List.of(),
+                k8AutoScaler.getPodsWithLabel("default", "traffic", "active"),
+                k8AutoScaler.getPodsWithLabel("default", "traffic", "inactive")));
+    }
+
+    /**
+     * Non-blocking variant of {@link #captureForContainerRuntime()}. The catalog entries are read on
+     * their own virtual threads, overlapping the Redis reads, since a stale entry falls back to a
+     * blocking Consul call.
+     */
+    public Uni<ClusterSnapshot> captureForContainerRuntimeAsync() {
+        var appName = sanitizeEnvVariable(containerRuntimeAppName);
+        var grpcAppName = sanitizeEnvVariable(containerRuntimeGrpcAppName);
+        var appCatalog = protocolTaskRunner.offload(() -> consulServiceCatalog.entry(appName));
+        var grpcAppCatalog = protocolTaskRunner.offload(() -> consulServiceCatalog.entry(grpcAppName));
+
+        return Uni.combine().all().unis(sessionsPerHostByProtocolAsync(), appCatalog, grpcAppCatalog).asTuple()
+                .map(tuple -> new ClusterSnapshot(
+                        tuple.getItem1().get(SessionTopology.WS_PROTOCOL),
+                        tuple.getItem1().get(SessionTopology.SSE_PROTOCOL),
+                        tuple.getItem1().get(SessionTopology.GRPC_PROTOCOL),
+                        tuple.getItem2().activeServices(),
+                        tuple.getItem2().inactiveServices(),
+                        tuple.getItem3().activeServices(),
+                        tuple.getItem3().inactiveServices(),
+                        List.of(),
+                        List.of()))
+                .flatMap(this::inShardAsync);
+    }
+
+    /**
+     * Non-blocking variant of {@link #captureForKubernetes()}. The pod listings are read with the
+     * blocking Kubernetes client on their own virtual threads, overlapping the Redis reads.
+     */
+    public Uni<ClusterSnapshot> captureForKubernetesAsync() {
+        var activePods = protocolTaskRunner.offload(() -> k8AutoScaler.getPodsWithLabel("default", "traffic", "active"));
+        var inactivePods = protocolTaskRunner.offload(() -> k8AutoScaler.getPodsWithLabel("default", "traffic", "inactive"));
+
+        return Uni.combine().all().unis(sessionsPerHostByProtocolAsync(), activePods, inactivePods).asTuple()
+                .map(tuple -> new ClusterSnapshot(
+                        tuple.getItem1().get(SessionTopology.WS_PROTOCOL),
+                        tuple.getItem1().get(SessionTopology.SSE_PROTOCOL),
+                        tuple.getItem1().get(SessionTopology.GRPC_PROTOCOL),
+                        List.of(),
+                        List.of(),
+                        List.of(),
+                        List.of(),
+                        tuple.getItem2(),
+                        tuple.getItem3()))
+                .flatMap(this::inShardAsync);
+    }
+
+    /**
+     * @return Servers of the session app in the shards of the other rebalancer replicas, as of their last
+     * report, 0 without sharding. Only fit for estimates, scaling changes are applied as deltas instead
+     */
+    public int serversOutsideShard() {
+        return shardCoordinator.isEnabled() ? shardCoordinator.outsideShard().servers() : 0;
+    }
+
+    /**
+     * @return Whether the shards of the other rebalancer replicas hold sessions, false without sharding
+     */
+    public boolean hasSessionsOutsideShard() {
+        return shardCoordinator.isEnabled() && shardCoordinator.outsideShard().sessions() > 0;
+    }
+
+    /**
+     * @return Whether this replica takes the actions made once for the whole cluster, always true without sharding
+     */
+    public boolean actsForCluster() {
+        return shardCoordinator.isCoordinator();
+    }
+
+    /**
+     * Reads the sessions per host of the three protocols, each protocol on its own branch.
+     */
+    private Map<String, Map<String, Integer>> sessionsPerHostByProtocol() {
+        return protocolTaskRunner.callAll("snapshot", ProtocolTaskRunner.branches(
+                SessionTopology.WS_PROTOCOL, () -> sessionsPerHost(SessionTopology.WS_PROTOCOL, wsSessionService::countSessionsPerHost),
+                SessionTopology.SSE_PROTOCOL, () -> sessionsPerHost(SessionTopology.SSE_PROTOCOL, sseSessionService::countSessionsPerHost),
+                SessionTopology.GRPC_PROTOCOL, () -> sessionsPerHost(SessionTopology.GRPC_PROTOCOL, grpcSessionService::countSessionsPerHost)));
+    }
+
+    private Uni<Map<String, Map<String, Integer>>> sessionsPerHostByProtocolAsync() {
+        return protocolTaskRunner.joinAll("snapshot", ProtocolTaskRunner.branches(
+                SessionTopology.WS_PROTOCOL, sessionsPerHostAsync(SessionTopology.WS_PROTOCOL, wsSessionService::countSessionsPerHostAsync),
+                SessionTopology.SSE_PROTOCOL, sessionsPerHostAsync(SessionTopology.SSE_PROTOCOL, sseSessionService::countSessionsPerHostAsync),
+                SessionTopology.GRPC_PROTOCOL, sessionsPerHostAsync(SessionTopology.GRPC_PROTOCOL, grpcSessionService::countSessionsPerHostAsync)));
+    }
+
+    /**
+     * Reads the per-host counts from the event-fed topology once it is seeded, from Redis otherwise.
+     */
+    private Map<String, Integer> sessionsPerHost(String protocol, Supplier<Map<String, Integer>> redisSessionsPerHost) {
+        return sessionTopology.isSeeded(protocol) ? sessionTopology.sessionsPerHost(protocol) : redisSessionsPerHost.get();
+    }
+
+    private Uni<Map<String, Integer>> sessionsPerHostAsync(String protocol, Supplier<Uni<Map<String, Integer>>> redisSessionsPerHost) {
+        return Uni.createFrom().deferred(() -> sessionTopology.isSeeded(protocol)
+                ? Uni.createFrom().item(sessionTopology.sessionsPerHost(protocol))
+                : redisSessionsPerHost.get());
+    }
+
+    /**
+     * Narrows the snapshot to the hosts of this replica's shard and reports the shard totals.
+     */
+    private ClusterSnapshot inShard(ClusterSnapshot snapshot) {
+        if (!shardCoordinator.isEnabled()) {
+            return snapshot;
+        }
+        var shard = shardCoordinator.shardOf(snapshot);
+        shardCoordinator.report(shard);
+        return shard;
+    }
+
+    /**
+     * Variant of {@link #inShard(ClusterSnapshot)} for the reactive captures, the shard report is a
+     * blocking Redis write and runs off the event loop.
+     */
+    private Uni<ClusterSnapshot> inShardAsync(ClusterSnapshot snapshot) {
+        if (!shardCoordinator.isEnabled()) {
+            return Uni.createFrom().item(snapshot);
+        }
+        var shard = shardCoordinator.shardOf(snapshot);
+        return protocolTaskRunner.offload(() -> shardCoordinator.report(shard)).replaceWith(shard);
+    }
+
+    private String sanitizeEnvVariable(String envVariable) {
+        return envVariable.trim().replaceAll("^\"|\"$", "");
+    }
+}
@@ -0,0 +1,157 @@
+package domain;
+
+import infrastructure.resources.rest.client.ConsulClient;
+import infrastructure.resources.rest.dto.ConsulService;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * In-memory copy of the Consul health catalog of the session apps. The first read of a
+ * service fetches it synchronously and starts a background watcher that long-polls
+ * {@code /v1/health/service/{name}} with Consul blocking queries, so the analysis path
+ * reads active/maintenance instances from memory and the catalog only changes when the
+ * Consul index does. Every answered poll refreshes the entry, so while the watch keeps failing
+ * an entry older than {@code consul.watch.max-staleness} is no longer served and reads go to
+ * Consul directly until the watch recovers.
+ */
+@ApplicationScoped
+public class ConsulServiceCatalog {
+
+    private static final Logger logger = Logger.getLogger(ConsulServiceCatalog.class.getName());
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30_000;
+
+    @ConfigProperty(name = "app.connection-rebalancer.consul.watch.enabled", defaultValue = "true")
+    boolean watchEnabled;
+
+    // Must stay below the rest client read timeout, Consul adds up to wait/16 of jitter
+    @ConfigProperty(name = "app.connection-rebalancer.consul.watch.wait", defaultValue = "25s")
+    String watchWait;
+
+    // Must stay above the watch wait, an idle service only refreshes once per long poll
+    @ConfigProperty(name = "app.connection-rebalancer.consul.watch.max-staleness", defaultValue = "60s")
+    Duration maxStaleness;
+
+    public record CatalogEntry(long index, List<ConsulService> activeServices, List<ConsulService> inactiveServices) {
+    }
+
+    private final ConsulClient consulClient;
+    private final Map<String, CatalogEntry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> refreshedAtNanos = new ConcurrentHashMap<>();
+    private final Map<String, Thread> watchers = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    public ConsulServiceCatalog(ConsulClient consulClient) {
+        this.consulClient = consulClient;
+    }
+
+    public List<ConsulService> getActiveServices(String serviceName) {
+        return entry(serviceName).activeServices();
+    }
+
+    public List<ConsulService> getInactiveServices(String serviceName) {
+        return entry(serviceName).inactiveServices();
+    }
+
+    /**
+     * @return The Consul index the cached entry was read at, 0 when the service is not watched
+     */
+    public long getIndex(String serviceName) {
+        var entry = entries.get(serviceName);
+        return entry == null ? 0 : entry.index();
+    }
+
+    /**
+     * @return The watched entry of the service, or a direct read when the watch has not refreshed it
+     * for {@code consul.watch.max-staleness}
+     */
+    public CatalogEntry entry(String serviceName) {
+        if (!watchEnabled) {
+            return toEntry(0, consulClient.getServiceInstances(serviceName));
+        }
+        var entry = entries.get(serviceName);
+        if (entry != null) {
+            if (System.nanoTime() - refreshedAtNanos.getOrDefault(serviceName, 0L) > maxStaleness.toNanos()) {
+                logger.warning("Consul catalog of " + serviceName + " was not refreshed for " + maxStaleness + ", reading it directly");
+                return toEntry(0, consulClient.getServiceInstances(serviceName));
+            }
+            return entry;
+        }
+        entry = entries.computeIfAbsent(serviceName, name -> fetch(name, 0));
+        watchers.computeIfAbsent(serviceName, name -> Thread.ofVirtual()
+                .name("consul-watch-" + name)
+                .start(() -> watch(name)));
+        return entry;
+    }
+
+    @PreDestroy
+    void stopWatchers() {
+        running = false;
+        watchers.values().forEach(Thread::interrupt);
+    }
+
+    private void watch(String serviceName) {
+        long backoffMillis = 1_000;
+        while (running) {
+            try {
+                var current = entries.get(serviceName);
+                var next = fetch(serviceName, current == null ? 0 : current.index());
+                if (current == null || next.index() != current.index()) {
+                    entries.put(serviceName, next);
+                    logger.fine("Consul catalog of " + serviceName + " moved to index " + next.index()
+                            + ": " + next.activeServices().size() + " active, " + next.inactiveServices().size() + " inactive");
+                }
+                backoffMillis = 1_000;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                logger.log(Level.WARNING, "Consul watch of " + serviceName + " failed, retrying in " + backoffMillis + "ms: " + e.getMessage());
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private CatalogEntry fetch(String serviceName, long index) {
+        var response = consulClient.watchServiceInstances(serviceName, index, watchWait);
+        var newIndex = parseIndex(response.getHeaderString("X-Consul-Index"));
+        refreshedAtNanos.put(serviceName, System.nanoTime());
+        // Consul may reset its index (e.g. after a leader change), start over from a fresh read in that case
+        if (newIndex < index) {
+            newIndex = 0;
+        }
+        return toEntry(newIndex, response.getEntity());
+    }
+
+    private CatalogEntry toEntry(long index, List<ConsulService> instances) {
+        var inactiveServices = instances.stream()
+                .filter(s -> s.Checks.stream().anyMatch(c -> c.CheckID.contains("_service_maintenance")))
+                .toList();
+        var activeServices = instances.stream()
+                .filter(s -> s.Checks.stream().allMatch(c -> c.Status.equals("passing")))
+                .toList();
+        return new CatalogEntry(index, activeServices, inactiveServices);
+    }
+
+    private long parseIndex(String index) {
+        try {
+            return index == null ? 0 : Long.parseLong(index.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package domain;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Remembers, per protocol and host, the sessions a balance pass told the host to drop that
+ * it has not shed yet. Progress is read from the session counts of the next passes: every
+ * session the host lost since the request counts against it. An entry is closed once the host
+ * has shed the whole request, or after {@code rebalance.in-flight-ttl} when it never does, so
+ * a host that stopped responding is not excluded from rebalancing forever.
+ */
+@ApplicationScoped
+public class DropLedger {
+
+    @ConfigProperty(name = "app.connection-rebalancer.rebalance.in-flight-ttl", defaultValue = "2m")
+    Duration inFlightTtl;
+
+    public record InFlightDrop(String protocol, String hostId, int requested, int remaining, int sessionsAtRequest,
+            Instant requestedAt, Instant expiresAt) {
+    }
+
+    private final Map<String, Map<String, InFlightDrop>> drops = new HashMap<>();
+
+    /**
+     * Closes the drops that are complete or expired and returns what is still outstanding.
+     * @param protocol The protocol the sessions belong to
+     * @param sessionsPerHost The current session count of every host
+     * @return Map of hostId to the sessions still to be shed
+     */
+    public synchronized Map<String, Integer> outstanding(String protocol, Map<String, Integer> sessionsPerHost) {
+        var hostDrops = drops.get(protocol);
+        if (hostDrops == null) {
+            return Map.of();
+        }
+        var now = Instant.now();
+        Map<String, Integer> outstanding = new HashMap<>();
+        hostDrops.values().removeIf(drop -> {
+            var shed = Math.max(0, drop.sessionsAtRequest() - sessionsPerHost.getOrDefault(drop.hostId(), 0));
+            var remaining = drop.requested() - shed;
+            if (remaining <= 0 || now.isAfter(drop.expiresAt())) {
+                return true;
+            }
+            outstanding.put(drop.hostId(), remaining);
+            return false;
+        });
+        hostDrops.replaceAll((hostId, drop) -> new InFlightDrop(protocol, hostId, drop.requested(), outstanding.get(hostId),
+                drop.sessionsAtRequest(), drop.requestedAt(), drop.expiresAt()));
+        return outstanding;
+    }
+
+    /**
+     * Records the drops just published. A host that still had drops outstanding gets one entry
+     * covering both, measured from its current session count.
+     * @param protocol The protocol the sessions belong to
+     * @param dropPlan Map of hostId to the sessions it was told to drop
+     * @param sessionsPerHost The session counts the plan was computed from
+     */
+    public synchronized void record(String protocol, Map<String, Integer> dropPlan, Map<String, Integer> sessionsPerHost) {
+        var hostDrops = drops.computeIfAbsent(protocol, p -> new HashMap<>());
+        var now = Instant.now();
+        dropPlan.forEach((hostId, sessions) -> {
+            var previous = hostDrops.get(hostId);
+            var requested = sessions + (previous == null ? 0 : previous.remaining());
+            hostDrops.put(hostId, new InFlightDrop(protocol, hostId, requested, requested, sessionsPerHost.getOrDefault(hostId, 0),
+                    now, now.plus(inFlightTtl)));
+        });
+    }
+
+    /**
+     * @return Every drop still in flight, as of the last balance pass of its protocol
+     */
+    public synchronized List<InFlightDrop> inFlightDrops() {
+        List<InFlightDrop> inFlight = new ArrayList<>();
+        drops.values().forEach(hostDrops -> inFlight.addAll(hostDrops.values()));
+        inFlight.sort(Comparator.comparing(InFlightDrop::protocol).thenComparing(InFlightDrop::hostId));
+        return inFlight;
+    }
+}
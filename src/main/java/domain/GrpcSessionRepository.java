@@ -2,8 +2,12 @@ package domain;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface GrpcSessionRepository {
     List<GrpcPersistentSession> findAllSessions();
+    void scanSessions(Consumer<List<GrpcPersistentSession>> batchConsumer);
+    Map<String, Integer> countSessionsPerHost();
     void dropGrpcSessions(Map<String, Integer> numberOfConnectionsToDrop);
+    Map<String, Integer> inFlightDrops();
 }
@@ -2,12 +2,14 @@ package domain;
 
 import infrastructure.resources.rest.client.ConsulClient;
 import infrastructure.resources.rest.dto.ConsulService;
+import domain.utils.HostSessionCounter;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
 
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
@@ -18,30 +20,44 @@ public class GrpcSessionService {
     Integer maxSessionsPerServer;
 
     GrpcSessionRepository grpcSessionRepository;
+    ReactiveGrpcSessionRepository reactiveGrpcSessionRepository;
     ConsulClient consulClient;
+    ConsulServiceCatalog consulServiceCatalog;
 
-    public GrpcSessionService(GrpcSessionRepository grpcSessionRepository, ConsulClient consulClient) {
-        this.grpcSessionRepository = grpcSessionRepository;
+    public GrpcSessionService(Instance<GrpcSessionRepository> grpcSessionRepositories,
+            Instance<ReactiveGrpcSessionRepository> reactiveGrpcSessionRepositories, ConsulClient consulClient,
+            ConsulServiceCatalog consulServiceCatalog) {
+        this.grpcSessionRepository = grpcSessionRepositories.get();
+        this.reactiveGrpcSessionRepository = reactiveGrpcSessionRepositories.get();
         this.consulClient = consulClient;
+        this.consulServiceCatalog = consulServiceCatalog;
     }
 
     public void sendAdminCommand(Map<String, Integer> sessions) {
         grpcSessionRepository.dropGrpcSessions(sessions);
     }
 
+    /**
+     * @return Map of hostId to the sessions already requested to drop and not yet acknowledged
+     */
+    public Map<String, Integer> inFlightDrops() {
+        return grpcSessionRepository.inFlightDrops();
+    }
+
     private Map<String, Integer> countOfSessionsPerServer(List<GrpcPersistentSession> grpcSessions) {
-        Map<String, Integer> sessionCountMap = new java.util.HashMap<>();
-        var uniqueHostIds = grpcSessions.stream().map(GrpcPersistentSession::hostId).collect(Collectors.toSet());
-        uniqueHostIds.forEach(hostId -> {
-            var count = (int) grpcSessions.stream().filter(session -> session.hostId().equals(hostId)).count();
-            sessionCountMap.put(hostId, count);
-        });
-        return sessionCountMap;
+        return HostSessionCounter.countByHost(grpcSessions, GrpcPersistentSession::hostId);
+    }
+
+    public Map<String, GrpcSessionUtilization> retrieveServerSessionUtilization() {
+        return retrieveServerSessionUtilization(grpcSessionRepository.countSessionsPerHost());
     }
 
     public Map<String, GrpcSessionUtilization> retrieveServerSessionUtilization(List<GrpcPersistentSession> grpcSessions) {
+        return retrieveServerSessionUtilization(countOfSessionsPerServer(grpcSessions));
+    }
+
+    public Map<String, GrpcSessionUtilization> retrieveServerSessionUtilization(Map<String, Integer> sessionsPerHost) {
         Map<String, GrpcSessionUtilization> utilizationMap = new java.util.HashMap<>();
-        var sessionsPerHost = countOfSessionsPerServer(grpcSessions);
         Logger.getLogger(GrpcSessionService.class.getName()).info("gRPC sessions per host: " + sessionsPerHost);
         sessionsPerHost.forEach((hostId, sessionCount) -> {
             utilizationMap.put(hostId, new GrpcSessionUtilization(sessionCount, maxSessionsPerServer));
@@ -53,26 +69,27 @@ public class GrpcSessionService {
         return grpcSessionRepository.findAllSessions();
     }
 
-    public void dropServerSessions(String fromServerId, int numberOfSessions) {
-        grpcSessionRepository.dropGrpcSessions(Map.of(fromServerId, numberOfSessions));
+    public Map<String, Integer> countSessionsPerHost() {
+        return grpcSessionRepository.countSessionsPerHost();
+    }
+
+    /**
+     * Non-blocking variant of {@link #countSessionsPerHost()}.
+     */
+    public Uni<Map<String, Integer>> countSessionsPerHostAsync() {
+        return reactiveGrpcSessionRepository.countSessionsPerHostAsync();
     }
 
-    private List<ConsulService> getServiceInstances(String serviceName) {
-        return consulClient.getServiceInstances(serviceName);
+    public void dropServerSessions(String fromServerId, int numberOfSessions) {
+        grpcSessionRepository.dropGrpcSessions(Map.of(fromServerId, numberOfSessions));
     }
 
     public List<ConsulService> getConsulInactiveServices(String serviceName) {
-        return getServiceInstances(serviceName)
-                .stream()
-                .filter(s -> s.Checks.stream().anyMatch(c -> c.CheckID.contains("_service_maintenance")))
-                .toList();
+        return consulServiceCatalog.getInactiveServices(serviceName);
     }
 
     public List<ConsulService> getConsulActiveServices(String serviceName) {
-        return getServiceInstances(serviceName)
-                .stream()
-                .filter(s -> s.Checks.stream().allMatch(c -> c.Status.equals("passing")))
-                .toList();
+        return consulServiceCatalog.getActiveServices(serviceName);
     }
 
     public void toggleConsulService(String serviceId, String enable, String reason) {
@@ -0,0 +1,14 @@
+package domain;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of {@link GrpcSessionRepository} used by the reactive utilization pipeline.
+ */
+public interface ReactiveGrpcSessionRepository {
+    Multi<GrpcPersistentSession> streamSessions();
+    Uni<Map<String, Integer>> countSessionsPerHostAsync();
+}
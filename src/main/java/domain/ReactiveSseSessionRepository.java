@@ -0,0 +1,14 @@
+package domain;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of {@link SseSessionRepository} used by the reactive utilization pipeline.
+ */
+public interface ReactiveSseSessionRepository {
+    Multi<SsePersistentSession> streamSessions();
+    Uni<Map<String, Integer>> countSessionsPerHostAsync();
+}
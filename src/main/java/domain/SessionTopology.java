@@ -0,0 +1,167 @@
+package domain;
+
+import domain.utils.HostSessionCounter;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Long-lived model of which host holds which session, per protocol. It is seeded once from
+ * a SCAN and then updated one session key at a time from change notifications, so the
+ * analysis reads per-host counts without touching the session keys. The per-host view is
+ * rebuilt only after a change, so reading it between changes costs nothing.
+ */
+@ApplicationScoped
+public class SessionTopology {
+
+    public static final String WS_PROTOCOL = "ws";
+    public static final String SSE_PROTOCOL = "sse";
+    public static final String GRPC_PROTOCOL = "grpc";
+
+    @ConfigProperty(name = "app.connection-rebalancer.topology.track-session-ids", defaultValue = "false")
+    boolean trackSessionIds;
+
+    /**
+     * Order-independent fingerprint of a set of session keys, comparable with one computed from a key-only SCAN.
+     */
+    public record Checksum(long sessionCount, long keyHash) {
+    }
+
+    private static final class ProtocolTopology {
+        final Map<String, String> hostBySessionKey = new HashMap<>();
+        final Map<String, Set<String>> sessionKeysByHost = new HashMap<>();
+        final HostSessionCounter counter = new HostSessionCounter();
+        long keyHash;
+        boolean seeded;
+        Map<String, Integer> view = Map.of();
+        boolean viewStale;
+    }
+
+    private final Map<String, ProtocolTopology> protocols = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces the topology of a protocol with a freshly scanned one.
+     * @param protocol The protocol the sessions belong to
+     * @param hostBySessionKey Map of session key to hostId
+     */
+    public synchronized void seed(String protocol, Map<String, String> hostBySessionKey) {
+        var topology = new ProtocolTopology();
+        hostBySessionKey.forEach((key, hostId) -> place(topology, key, hostId));
+        topology.seeded = true;
+        topology.viewStale = true;
+        protocols.put(protocol, topology);
+    }
+
+    /**
+     * Moves a session key to a host, or removes it when hostId is null.
+     * @return true if the per-host counts changed
+     */
+    public synchronized boolean assign(String protocol, String sessionKey, String hostId) {
+        var topology = protocols.computeIfAbsent(protocol, p -> new ProtocolTopology());
+        var previousHostId = topology.hostBySessionKey.get(sessionKey);
+        if (previousHostId == null ? hostId == null : previousHostId.equals(hostId)) {
+            return false;
+        }
+        if (previousHostId != null) {
+            topology.hostBySessionKey.remove(sessionKey);
+            topology.counter.add(previousHostId, -1);
+            topology.keyHash -= keyHash(sessionKey);
+            if (trackSessionIds) {
+                var sessionKeys = topology.sessionKeysByHost.get(previousHostId);
+                if (sessionKeys != null) {
+                    sessionKeys.remove(sessionKey);
+                }
+            }
+        }
+        if (hostId != null) {
+            place(topology, sessionKey, hostId);
+        }
+        topology.viewStale = true;
+        return true;
+    }
+
+    public boolean isSeeded(String protocol) {
+        var topology = protocols.get(protocol);
+        return topology != null && topology.seeded;
+    }
+
+    /**
+     * @return Unmodifiable map of hostId to session count, hosts without sessions are omitted
+     */
+    public synchronized Map<String, Integer> sessionsPerHost(String protocol) {
+        var topology = protocols.get(protocol);
+        if (topology == null) {
+            return Map.of();
+        }
+        if (topology.viewStale) {
+            var sessionsPerHost = topology.counter.toMap();
+            sessionsPerHost.values().removeIf(count -> count <= 0);
+            topology.view = Map.copyOf(sessionsPerHost);
+            topology.viewStale = false;
+        }
+        return topology.view;
+    }
+
+    /**
+     * @return The session keys held by a host, empty unless session ids are tracked
+     */
+    public synchronized Set<String> sessionKeys(String protocol, String hostId) {
+        var topology = protocols.get(protocol);
+        if (topology == null || !topology.sessionKeysByHost.containsKey(hostId)) {
+            return Set.of();
+        }
+        return Set.copyOf(topology.sessionKeysByHost.get(hostId));
+    }
+
+    public synchronized Checksum checksum(String protocol) {
+        var topology = protocols.get(protocol);
+        return topology == null ? new Checksum(0, 0) : new Checksum(topology.hostBySessionKey.size(), topology.keyHash);
+    }
+
+    /**
+     * @param excludedKeys Session keys left out of the fingerprint, e.g. keys changed while it was being compared
+     * @return The checksum of the protocol's session keys, without the excluded ones
+     */
+    public synchronized Checksum checksumExcluding(String protocol, Set<String> excludedKeys) {
+        var topology = protocols.get(protocol);
+        if (topology == null) {
+            return new Checksum(0, 0);
+        }
+        long sessionCount = topology.hostBySessionKey.size();
+        long hash = topology.keyHash;
+        for (var key : excludedKeys) {
+            if (topology.hostBySessionKey.containsKey(key)) {
+                sessionCount--;
+                hash -= keyHash(key);
+            }
+        }
+        return new Checksum(sessionCount, hash);
+    }
+
+    /**
+     * 64-bit FNV-1a of the key, summed into {@link Checksum#keyHash()}.
+     */
+    public static long keyHash(String sessionKey) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < sessionKey.length(); i++) {
+            hash ^= sessionKey.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void place(ProtocolTopology topology, String sessionKey, String hostId) {
+        topology.hostBySessionKey.put(sessionKey, hostId);
+        topology.counter.increment(hostId);
+        topology.keyHash += keyHash(sessionKey);
+        if (trackSessionIds) {
+            topology.sessionKeysByHost.computeIfAbsent(hostId, h -> new HashSet<>()).add(sessionKey);
+        }
+    }
+}
@@ -2,8 +2,12 @@ package domain;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface SseSessionRepository {
     List<SsePersistentSession> findAllSessions();
+    void scanSessions(Consumer<List<SsePersistentSession>> batchConsumer);
+    Map<String, Integer> countSessionsPerHost();
     void dropSseSessions(Map<String, Integer> numberOfConnectionsToDrop);
+    Map<String, Integer> inFlightDrops();
 }
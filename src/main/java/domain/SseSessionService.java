@@ -2,12 +2,14 @@ package domain;
 
 import infrastructure.resources.rest.client.ConsulClient;
 import infrastructure.resources.rest.dto.ConsulService;
+import domain.utils.HostSessionCounter;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
 
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
@@ -18,30 +20,44 @@ public class SseSessionService {
     Integer maxSessionsPerServer;
 
     SseSessionRepository sseSessionRepository;
+    ReactiveSseSessionRepository reactiveSseSessionRepository;
     ConsulClient consulClient;
+    ConsulServiceCatalog consulServiceCatalog;
 
-    public SseSessionService(SseSessionRepository sseSessionRepository, ConsulClient consulClient) {
-        this.sseSessionRepository = sseSessionRepository;
+    public SseSessionService(Instance<SseSessionRepository> sseSessionRepositories,
+            Instance<ReactiveSseSessionRepository> reactiveSseSessionRepositories, ConsulClient consulClient,
+            ConsulServiceCatalog consulServiceCatalog) {
+        this.sseSessionRepository = sseSessionRepositories.get();
+        this.reactiveSseSessionRepository = reactiveSseSessionRepositories.get();
         this.consulClient = consulClient;
+        this.consulServiceCatalog = consulServiceCatalog;
     }
 
     public void sendAdminCommand(Map<String, Integer> sessions) {
         sseSessionRepository.dropSseSessions(sessions);
     }
 
+    /**
+     * @return Map of hostId to the sessions already requested to drop and not yet acknowledged
+     */
+    public Map<String, Integer> inFlightDrops() {
+        return sseSessionRepository.inFlightDrops();
+    }
+
     private Map<String, Integer> countOfSessionsPerServer(List<SsePersistentSession> sseSessions) {
-        Map<String, Integer> sessionCountMap = new java.util.HashMap<>();
-        var uniqueHostIds = sseSessions.stream().map(SsePersistentSession::hostId).collect(Collectors.toSet());
-        uniqueHostIds.forEach(hostId -> {
-            var count = (int) sseSessions.stream().filter(session -> session.hostId().equals(hostId)).count();
-            sessionCountMap.put(hostId, count);
-        });
-        return sessionCountMap;
+        return HostSessionCounter.countByHost(sseSessions, SsePersistentSession::hostId);
+    }
+
+    public Map<String, SseSessionUtilization> retrieveServerSessionUtilization() {
+        return retrieveServerSessionUtilization(sseSessionRepository.countSessionsPerHost());
     }
 
     public Map<String, SseSessionUtilization> retrieveServerSessionUtilization(List<SsePersistentSession> sseSessions) {
+        return retrieveServerSessionUtilization(countOfSessionsPerServer(sseSessions));
+    }
+
+    public Map<String, SseSessionUtilization> retrieveServerSessionUtilization(Map<String, Integer> sessionsPerHost) {
         Map<String, SseSessionUtilization> utilizationMap = new java.util.HashMap<>();
-        var sessionsPerHost = countOfSessionsPerServer(sseSessions);
         Logger.getLogger(SseSessionService.class.getName()).info("SSE sessions per host: " + sessionsPerHost);
         sessionsPerHost.forEach((hostId, sessionCount) -> {
             utilizationMap.put(hostId, new SseSessionUtilization(sessionCount, maxSessionsPerServer));
@@ -53,26 +69,27 @@ public class SseSessionService {
         return sseSessionRepository.findAllSessions();
     }
 
-    public void dropServerSessions(String fromServerId, int numberOfSessions) {
-        sseSessionRepository.dropSseSessions(Map.of(fromServerId, numberOfSessions));
+    public Map<String, Integer> countSessionsPerHost() {
+        return sseSessionRepository.countSessionsPerHost();
+    }
+
+    /**
+     * Non-blocking variant of {@link #countSessionsPerHost()}.
+     */
+    public Uni<Map<String, Integer>> countSessionsPerHostAsync() {
+        return reactiveSseSessionRepository.countSessionsPerHostAsync();
     }
 
-    private List<ConsulService> getServiceInstances(String serviceName) {
-        return consulClient.getServiceInstances(serviceName);
+    public void dropServerSessions(String fromServerId, int numberOfSessions) {
+        sseSessionRepository.dropSseSessions(Map.of(fromServerId, numberOfSessions));
     }
 
     public List<ConsulService> getConsulInactiveServices(String serviceName) {
-        return getServiceInstances(serviceName)
-                .stream()
-                .filter(s -> s.Checks.stream().anyMatch(c -> c.CheckID.contains("_service_maintenance")))
-                .toList();
+        return consulServiceCatalog.getInactiveServices(serviceName);
     }
 
     public List<ConsulService> getConsulActiveServices(String serviceName) {
-        return getServiceInstances(serviceName)
-                .stream()
-                .filter(s -> s.Checks.stream().allMatch(c -> c.Status.equals("passing")))
-                .toList();
+        return consulServiceCatalog.getActiveServices(serviceName);
     }
 
     public void toggleConsulService(String serviceId, String enable, String reason) {
@@ -2,8 +2,12 @@ package domain;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface WsSessionRepository {
     List<PersistentSession> findAllSessions();
+    void scanSessions(Consumer<List<PersistentSession>> batchConsumer);
+    Map<String, Integer> countSessionsPerHost();
     void dropWsSessions(Map<String, Integer> numberOfConnectionsToDrop);
+    Map<String, Integer> inFlightDrops();
 }
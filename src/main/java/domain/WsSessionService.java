@@ -1,12 +1,14 @@
 package domain;
 
+import domain.utils.HostSessionCounter;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
@@ -20,18 +22,32 @@ public class WsSessionService {
     @ConfigProperty(name = "ws.session.max.sessions", defaultValue = "10")
     Integer MAX_SESSIONS_PER_SERVER;
     WsSessionRepository wsSessionRepository;
+    ReactiveWsSessionRepository reactiveWsSessionRepository;
     
     ConsulClient consulClient;
-
-    public WsSessionService(WsSessionRepository wsSessionRepository, ConsulClient consulClient) {
-        this.wsSessionRepository = wsSessionRepository;
+    ConsulServiceCatalog consulServiceCatalog;
+
+    public WsSessionService(Instance<WsSessionRepository> wsSessionRepositories,
+            Instance<ReactiveWsSessionRepository> reactiveWsSessionRepositories, ConsulClient consulClient,
+            ConsulServiceCatalog consulServiceCatalog) {
+        // SCAN or counter based repository, selected by app.connection-rebalancer.redis.session-source
+        this.wsSessionRepository = wsSessionRepositories.get();
+        this.reactiveWsSessionRepository = reactiveWsSessionRepositories.get();
         this.consulClient = consulClient;
+        this.consulServiceCatalog = consulServiceCatalog;
     }
 
     public void sendAdminCommand(Map<String, Integer> sessions){
         wsSessionRepository.dropWsSessions(sessions);
     }
 
+    /**
+     * @return Map of hostId to the sessions already requested to drop and not yet acknowledged
+     */
+    public Map<String, Integer> inFlightDrops() {
+        return wsSessionRepository.inFlightDrops();
+    }
+
     public Map<String, PersistentSession> retrieveSessionsToDrop() {
         // Analyze sessions and determine if rebalancing is needed
         var wsSessions = findAllSessions();
@@ -41,19 +57,20 @@ public class WsSessionService {
     }
 
     private Map<String, Integer> countOfSessionsPerServer(List<PersistentSession> wsSessions){
-        Map<String, Integer> sessionCountMap = new java.util.HashMap<>();
-        var uniqueHostIds = wsSessions.stream().map(PersistentSession::hostId).collect(Collectors.toSet());
-        uniqueHostIds.stream().forEach(hostId -> {
-            var count = (int) wsSessions.stream().filter(session -> session.hostId().equals(hostId)).count();
-            sessionCountMap.put(hostId, count);
-        });
-        return sessionCountMap;
+        return HostSessionCounter.countByHost(wsSessions, PersistentSession::hostId);
+    }
+
+    public Map<String, WsSessionUtilization> retrieveServerSessionUtilization() {
+        return retrieveServerSessionUtilization(wsSessionRepository.countSessionsPerHost());
     }
 
     public Map<String, WsSessionUtilization> retrieveServerSessionUtilization(List<PersistentSession> wsSessions) {
+        return retrieveServerSessionUtilization(countOfSessionsPerServer(wsSessions));
+    }
+
+    public Map<String, WsSessionUtilization> retrieveServerSessionUtilization(Map<String, Integer> sessionsPerHost) {
         // create a map of serverId to WsSessionUtilization
         Map<String, WsSessionUtilization> utilizationMap = new java.util.HashMap<>();
-        var sessionsPerHost = countOfSessionsPerServer(wsSessions);
         Logger.getLogger(WsSessionService.class.getName()).info("Sessions per host: " + sessionsPerHost.toString());
         sessionsPerHost.forEach((hostId, sessionCount) -> {
             utilizationMap.put(hostId, new WsSessionUtilization(sessionCount, MAX_SESSIONS_PER_SERVER));
@@ -67,29 +84,29 @@ public class WsSessionService {
         return wsSessionRepository.findAllSessions();
     }
 
+    public Map<String, Integer> countSessionsPerHost() {
+        return wsSessionRepository.countSessionsPerHost();
+    }
+
+    /**
+     * Non-blocking variant of {@link #countSessionsPerHost()}.
+     */
+    public Uni<Map<String, Integer>> countSessionsPerHostAsync() {
+        return reactiveWsSessionRepository.countSessionsPerHostAsync();
+    }
+
     public void dropServerSessions(String fromServerId, int numberOfSessions) {
         // Here we could add some business logic before dropping sessions with a redis admin command for listening servers...
         wsSessionRepository.dropWsSessions(Map.of(fromServerId, numberOfSessions));
     }
 
-    private List<ConsulService> getServiceInstances(String serviceName) {
-        
-        var services = consulClient.getServiceInstances(serviceName);
-        return services;
-    }
-
     public List<ConsulService> getConsulInactiveServices(String serviceName) {    
-        return getServiceInstances(serviceName)
-                .stream()
-                .filter(s -> s.Checks.stream().anyMatch(c -> c.CheckID.contains("_service_maintenance")))
-                .toList();
+        // Served from the blocking-query watch instead of a Consul round trip per call
+        return consulServiceCatalog.getInactiveServices(serviceName);
     }
 
     public List<ConsulService> getConsulActiveServices(String serviceName) {
-        return getServiceInstances(serviceName)
-                .stream()
-                .filter(s -> s.Checks.stream().allMatch(c -> c.Status.equals("passing")))
-                .toList();
+        return consulServiceCatalog.getActiveServices(serviceName);
     }    
 
     public void toggleConsulService(String serviceId, String enable, String reason) {
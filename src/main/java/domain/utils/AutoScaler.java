@@ -1,29 +1,43 @@
 package domain.utils;
 
 import jakarta.enterprise.context.ApplicationScoped;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.IntUnaryOperator;
+
+import domain.ConsulServiceCatalog;
+import infrastructure.docker.DockerContainerIndex;
+import infrastructure.docker.DockerEngineClient;
 import infrastructure.resources.rest.client.ConsulClient;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 @ApplicationScoped
 public class AutoScaler {
 
-    @ConfigProperty(name = "socket-proxy.uri")
-    String dockerSocketProxyUri;
-
     @ConfigProperty(name = "container-runtime.network")
     String containerRuntimeNetwork;
 
+    @ConfigProperty(name = "app.connection-rebalancer.docker.scale-out-concurrency", defaultValue = "8")
+    int scaleOutConcurrency;
+
     ConsulClient consulClient;
 
+    ConsulServiceCatalog consulServiceCatalog;
+
+    DockerEngineClient dockerEngineClient;
 
-    public AutoScaler(ConsulClient consulClient) {
+    DockerContainerIndex dockerContainerIndex;
+
+    public AutoScaler(ConsulClient consulClient, ConsulServiceCatalog consulServiceCatalog, DockerEngineClient dockerEngineClient,
+            DockerContainerIndex dockerContainerIndex) {
         this.consulClient = consulClient;
+        this.consulServiceCatalog = consulServiceCatalog;
+        this.dockerEngineClient = dockerEngineClient;
+        this.dockerContainerIndex = dockerContainerIndex;
     }
 
     // 1. SCALE OUT: "Dumb" expansion using Docker Compose
@@ -51,45 +65,55 @@ public class AutoScaler {
         }
     }
 
-    public void scaleOut(int targetCount, String appName) {
-        try {
-            System.out.println("🚀 Scaling OUT to " + targetCount + " instances...");
+    /**
+     * Outcome of creating and starting one replica during a scale out
+     * @param containerName The unique name the container was created with
+     * @param containerId The container id, null if the create call failed
+     * @param created Whether the container was created
+     * @param started Whether the container was started
+     * @param error The engine error body or exception message, null on success
+     */
+    public record ContainerLaunchResult(String containerName, String containerId, boolean created, boolean started, String error) {
+    }
+
+    public List<ContainerLaunchResult> scaleOut(int targetCount, String appName) {
+        System.out.println("🚀 Scaling OUT to " + targetCount + " instances...");
+        return launchReplicas(appName, currentCount -> targetCount - currentCount);
+    }
 
-            HttpClient client = HttpClient.newHttpClient();
-            String baseUrl = dockerSocketProxyUri;
-            var objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
+    /**
+     * Adds replicas on top of the running ones, for callers that only know their own part of the
+     * app, e.g. a sharded rebalancer replica, whose absolute target would overwrite the other shards'.
+     * @param count The number of replicas to add
+     */
+    public List<ContainerLaunchResult> scaleOutBy(int count, String appName) {
+        System.out.println("🚀 Scaling OUT by " + count + " instances...");
+        return launchReplicas(appName, currentCount -> count);
+    }
 
-            // 1. Find an existing app container to use as template
-            String filters = java.net.URLEncoder.encode("{\"name\":[\"" + appName + "\"]}", java.nio.charset.StandardCharsets.UTF_8);
-            HttpRequest listRequest = HttpRequest.newBuilder()
-                                                 .uri(URI.create(baseUrl + "/containers/json?filters=" + filters))
-                                                 .GET()
-                                                 .build();
+    private List<ContainerLaunchResult> launchReplicas(String appName, IntUnaryOperator toCreateForCurrentCount) {
+        try {
+            var objectMapper = dockerEngineClient.objectMapper();
 
-            HttpResponse<String> listResponse = client.send(listRequest, HttpResponse.BodyHandlers.ofString());
-            var containers = objectMapper.readValue(listResponse.body(), com.fasterxml.jackson.databind.JsonNode[].class);
+            // 1. Find an existing app container to use as template, from the replica registry fed by docker events
+            var containers = dockerContainerIndex.containersMatchingName(appName);
 
-            if (containers.length == 0) {
+            if (containers.isEmpty()) {
                 System.err.println("❌ No existing " + appName + " container found as template");
-                return;
+                return List.of();
             }
 
-            String templateContainerId = containers[0].get("Id").asText();
-            String imageName = containers[0].get("Image").asText();
+            String templateContainerId = containers.getFirst().id();
+            String imageName = containers.getFirst().image();
 
             // 2. Inspect template container for config
-            HttpRequest inspectRequest = HttpRequest.newBuilder()
-                                                    .uri(URI.create(baseUrl + "/containers/" + templateContainerId + "/json"))
-                                                    .GET()
-                                                    .build();
-
-            HttpResponse<String> inspectResponse = client.send(inspectRequest, HttpResponse.BodyHandlers.ofString());
+            var inspectResponse = dockerEngineClient.get("/containers/" + templateContainerId + "/json");
             var templateConfig = objectMapper.readTree(inspectResponse.body());
 
-            int currentCount = containers.length;
-            int toCreate = targetCount - currentCount;
+            int currentCount = containers.size();
+            int toCreate = toCreateForCurrentCount.applyAsInt(currentCount);
 
-            System.out.println("📊 Current count: " + currentCount + ", Target count: " + targetCount + ", To create: " + toCreate);
+            System.out.println("📊 Current count: " + currentCount + ", Target count: " + (currentCount + toCreate) + ", To create: " + toCreate);
 
             // Find the target network name from the template container
             String targetNetworkName = null;
@@ -105,148 +129,143 @@ public class AutoScaler {
 
             if (targetNetworkName == null) {
                 System.err.println("❌ No network containing '" + containerRuntimeNetwork + "' found in template container");
-                return;
+                return List.of();
             }
 
             System.out.println("🔗 Target network: " + targetNetworkName);
 
-            for (int i = 0; i < toCreate; i++) {
-                // 3. Create container config
-                var createConfig = objectMapper.createObjectNode();
-                createConfig.put("Image", imageName);
+            // 3. Create container config, identical for every replica
+            var createConfig = objectMapper.createObjectNode();
+            createConfig.put("Image", imageName);
 
-                // Copy environment variables
-                if (templateConfig.has("Config") && templateConfig.get("Config").has("Env")) {
-                    createConfig.set("Env", templateConfig.get("Config").get("Env"));
-                }
+            // Copy environment variables
+            if (templateConfig.has("Config") && templateConfig.get("Config").has("Env")) {
+                createConfig.set("Env", templateConfig.get("Config").get("Env"));
+            }
 
-                // Copy exposed ports
-                if (templateConfig.has("Config") && templateConfig.get("Config").has("ExposedPorts")) {
-                    createConfig.set("ExposedPorts", templateConfig.get("Config").get("ExposedPorts"));
-                }
+            // Copy exposed ports
+            if (templateConfig.has("Config") && templateConfig.get("Config").has("ExposedPorts")) {
+                createConfig.set("ExposedPorts", templateConfig.get("Config").get("ExposedPorts"));
+            }
 
-                // Host config (volumes, network mode)
-                var hostConfig = objectMapper.createObjectNode();
-                if (templateConfig.has("HostConfig") && templateConfig.get("HostConfig").has("Binds")) {
-                    hostConfig.set("Binds", templateConfig.get("HostConfig").get("Binds"));
+            // Host config (volumes, network mode)
+            var hostConfig = objectMapper.createObjectNode();
+            if (templateConfig.has("HostConfig") && templateConfig.get("HostConfig").has("Binds")) {
+                hostConfig.set("Binds", templateConfig.get("HostConfig").get("Binds"));
+            }
+            // Set NetworkMode to the target network so the container is NOT added to the default network
+            hostConfig.put("NetworkMode", targetNetworkName);
+            createConfig.set("HostConfig", hostConfig);
+
+            // Attach to the target network via NetworkingConfig as well
+            var networkingConfig = objectMapper.createObjectNode();
+            var endpointsConfig = objectMapper.createObjectNode();
+            endpointsConfig.set(targetNetworkName, objectMapper.createObjectNode());
+            networkingConfig.set("EndpointsConfig", endpointsConfig);
+            createConfig.set("NetworkingConfig", networkingConfig);
+
+            // 4. Create and start all replicas concurrently, at most scaleOutConcurrency in flight
+            var createBody = createConfig.toString();
+            var namePrefix = appName + "-" + System.currentTimeMillis() + "-";
+            var permits = new Semaphore(Math.max(1, scaleOutConcurrency));
+            List<ContainerLaunchResult> results = new ArrayList<>();
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<ContainerLaunchResult>> launches = new ArrayList<>();
+                for (int i = 0; i < toCreate; i++) {
+                    var containerName = namePrefix + i;
+                    launches.add(executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            return createAndStartContainer(containerName, createBody);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
                 }
-                // Set NetworkMode to the target network so the container is NOT added to the default network
-                hostConfig.put("NetworkMode", targetNetworkName);
-                createConfig.set("HostConfig", hostConfig);
-
-                // Attach to the target network via NetworkingConfig as well
-                var networkingConfig = objectMapper.createObjectNode();
-                var endpointsConfig = objectMapper.createObjectNode();
-                endpointsConfig.set(targetNetworkName, objectMapper.createObjectNode());
-                networkingConfig.set("EndpointsConfig", endpointsConfig);
-                createConfig.set("NetworkingConfig", networkingConfig);
-
-                // 4. Create the container
-                HttpRequest createRequest = HttpRequest.newBuilder()
-                                                       .uri(URI.create(baseUrl + "/containers/create?name=" + appName + "-" + System.currentTimeMillis()))
-                                                       .header("Content-Type", "application/json")
-                                                       .POST(HttpRequest.BodyPublishers.ofString(createConfig.toString()))
-                                                       .build();
-
-                HttpResponse<String> createResponse = client.send(createRequest, HttpResponse.BodyHandlers.ofString());
-                System.out.println("📦 Create container response: " + createResponse.statusCode() + " - " + createResponse.body());
-
-                if (createResponse.statusCode() == 201) {
-                    var newContainer = objectMapper.readTree(createResponse.body());
-                    String newContainerId = newContainer.get("Id").asText();
-
-                    // 5. Start the container
-                    HttpRequest startRequest = HttpRequest.newBuilder()
-                                                          .uri(URI.create(baseUrl + "/containers/" + newContainerId + "/start"))
-                                                          .POST(HttpRequest.BodyPublishers.noBody())
-                                                          .build();
-
-                    HttpResponse<String> startResponse = client.send(startRequest, HttpResponse.BodyHandlers.ofString());
-
-                    if (startResponse.statusCode() == 204 || startResponse.statusCode() == 200) {
-                        System.out.println("✅ Container " + newContainerId.substring(0, 12) + " created and started");
-                    }
-                } else {
-                    System.err.println("❌ Failed to create container: " + createResponse.body());
+                for (var launch : launches) {
+                    results.add(launch.get());
                 }
             }
 
-            System.out.println("✅ Scale Out Complete");
+            long started = results.stream().filter(ContainerLaunchResult::started).count();
+            System.out.println("✅ Scale Out Complete: " + started + "/" + toCreate + " containers started");
+            return results;
 
         } catch (Exception e) {
             e.printStackTrace();
+            return List.of();
         }
     }
 
-    // 2. SCALE IN: "Smart" reduction using Docker API
-    // We bypass Compose to kill the SPECIFIC container that is idle.
-    public void stopSpecificContainer(String containerIp) {
-
-        // 1. Find container ID by IP
-        String socketProxyURI = dockerSocketProxyUri;
-        String socketProxyUrl = socketProxyURI + "/containers/json";
-        String containerId = null;
+    private ContainerLaunchResult createAndStartContainer(String containerName, String createBody) {
         try {
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(socketProxyUrl))
-                    .GET()
-                    .build();
+            var createResponse = dockerEngineClient.post("/containers/create?name=" + containerName, createBody);
+            System.out.println("📦 Create container response: " + createResponse.statusCode() + " - " + createResponse.body());
 
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (createResponse.statusCode() != 201) {
+                System.err.println("❌ Failed to create container: " + createResponse.body());
+                return new ContainerLaunchResult(containerName, null, false, false, createResponse.body());
+            }
+            String newContainerId = dockerEngineClient.readTree(createResponse.body()).get("Id").asText();
 
-            if (response.statusCode() == 200) {
-                String responseBody = response.body();
-                // Parse JSON to find container with matching IP
-                var containers = new com.fasterxml.jackson.databind.ObjectMapper()
-                        .readValue(responseBody, com.fasterxml.jackson.databind.JsonNode[].class);
-                
-                for (var container : containers) {
-                    var networks = container.get("NetworkSettings").get("Networks");
-                    for (var network : networks) {
-                        var ipAddress = network.get("IPAddress").asText();
-                        if (ipAddress.equals(containerIp)) {
-                            containerId = container.get("Id").asText();
-                            break;
-                        }
-                    }
-                    if (containerId != null) break;
-                }
+            // 5. Start the container
+            var startResponse = dockerEngineClient.post("/containers/" + newContainerId + "/start", null);
 
-                if (containerId == null) {
-                    System.err.println("❌ No container found with IP: " + containerIp);
-                    return;
-                }
+            if (startResponse.statusCode() == 204 || startResponse.statusCode() == 200) {
+                System.out.println("✅ Container " + newContainerId.substring(0, 12) + " created and started");
+                registerStartedContainer(newContainerId);
+                return new ContainerLaunchResult(containerName, newContainerId, true, true, null);
+            }
+            System.err.println("❌ Failed to start container " + newContainerId.substring(0, 12) + ": " + startResponse.body());
+            return new ContainerLaunchResult(containerName, newContainerId, true, false, startResponse.body());
+        } catch (Exception e) {
+            System.err.println("❌ Error while launching container " + containerName + ": " + e.getMessage());
+            return new ContainerLaunchResult(containerName, null, false, false, e.getMessage());
+        }
+    }
 
-            } else {
-                System.err.println("❌ Failed to list containers: " + response.body());
+    /**
+     * Adds a started replica to the container index, so the next scale out counts it even if its
+     * docker start event has not arrived yet. Falls back to a full resync when the inspect fails.
+     */
+    private void registerStartedContainer(String containerId) {
+        try {
+            var inspectResponse = dockerEngineClient.get("/containers/" + containerId + "/json");
+            if (inspectResponse.isSuccessful()) {
+                dockerContainerIndex.put(DockerContainerIndex.toEntry(dockerEngineClient.readTree(inspectResponse.body())));
                 return;
             }
-
+            System.err.println("❌ Failed to inspect started container " + containerId.substring(0, 12) + ": " + inspectResponse.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            e.printStackTrace();
-            return;
+            System.err.println("❌ Error while inspecting started container " + containerId.substring(0, 12) + ": " + e.getMessage());
         }
-        
+        dockerContainerIndex.resync();
+    }
 
+    // 2. SCALE IN: "Smart" reduction using Docker API
+    // We bypass Compose to kill the SPECIFIC container that is idle.
+    public void stopSpecificContainer(String containerIp) {
+
+        // 1. Find container ID by IP from the container index, a full listing only happens on resync
+        var container = dockerContainerIndex.findByIp(containerIp);
+        if (container.isEmpty()) {
+            System.err.println("❌ No container found with IP: " + containerIp);
+            return;
+        }
+        String containerId = container.get().id();
 
         try {
             System.out.println("🔻 Scaling IN: Stopping idle container " + containerId);
 
             // Use the Socket Proxy we set up earlier!
             // Endpoint: POST /containers/{id}/stop
-            String socketProxyStopUrl = dockerSocketProxyUri + "/containers/" + containerId + "/stop";
-
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(socketProxyStopUrl))
-                    .POST(HttpRequest.BodyPublishers.noBody())
-                    .build();
-
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            var response = dockerEngineClient.post("/containers/" + containerId + "/stop", null);
 
             if (response.statusCode() == 204 || response.statusCode() == 200) {
                 System.out.println("✅ Container " + containerId + " stopped successfully.");
+                dockerContainerIndex.remove(containerId);
                 
                 // Prune stopped containers after successful stop
                 pruneStoppedContainers();
@@ -263,19 +282,10 @@ public class AutoScaler {
         try {
             System.out.println("🧹 Pruning stopped containers...");
 
-            String socketProxyPruneUrl = dockerSocketProxyUri + "/containers/prune";
-
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(socketProxyPruneUrl))
-                    .POST(HttpRequest.BodyPublishers.noBody())
-                    .build();
-
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            var response = dockerEngineClient.post("/containers/prune", null);
 
             if (response.statusCode() == 200) {
-                var objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-                var pruneResponse = objectMapper.readTree(response.body());
+                var pruneResponse = dockerEngineClient.readTree(response.body());
                 
                 var containersDeleted = pruneResponse.get("ContainersDeleted");
                 var spaceReclaimed = pruneResponse.get("SpaceReclaimed").asLong();
@@ -295,10 +305,7 @@ public class AutoScaler {
     public void scaleIn(int numberOfServers, Map<String, Integer> serverUtilization, String appName) {
         // Placeholder: In a real scenario, we would identify idle containers.
         // Here, we simulate stopping 'numberOfServers' idle containers.
-        var consulServices = consulClient.getServiceInstances(appName);
-        var activeOnlyConsulServices = consulServices.stream()
-                .filter(s -> s.Checks.stream().allMatch(c -> c.Status.equals("passing")))
-                .toList();
+        var activeOnlyConsulServices = consulServiceCatalog.getActiveServices(appName);
         var activeServiceWithLeastUtilization = activeOnlyConsulServices.stream()
                 .sorted((s1, s2) -> {
                     var utilization1 = serverUtilization.getOrDefault(s1.Service.Address, Integer.MAX_VALUE);
@@ -0,0 +1,63 @@
+package domain.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring that assigns session hosts to rebalancer replicas. Every member is
+ * placed on the ring at {@code virtualNodes} points, and a host belongs to the first member
+ * point at or after its own hash. When a member joins or leaves, only the hosts between its
+ * points and their predecessors move, about {@code 1/members} of the fleet. Hashes are taken
+ * from MD5 so every replica computes the same ring. Lookups cost O(log(members * virtualNodes)).
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> members;
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    /**
+     * @param members Ids of the replicas sharing the hosts
+     * @param virtualNodes Points per member, more points spread the hosts more evenly
+     */
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        this.members = members.stream().distinct().sorted().toList();
+        for (var member : this.members) {
+            for (int i = 0; i < Math.max(1, virtualNodes); i++) {
+                points.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * @return The member owning the key, null when the ring has no members
+     */
+    public String owner(String key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        var point = points.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * @return The members of the ring, sorted by id
+     */
+    public List<String> members() {
+        return members;
+    }
+
+    private static long hash(String key) {
+        try {
+            var digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
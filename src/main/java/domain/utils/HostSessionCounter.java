@@ -0,0 +1,125 @@
+package domain.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Single-pass per-host session counter shared by the WebSocket, SSE and gRPC services.
+ * Host ids are interned into an open-addressing table whose slots index a primitive
+ * counter array, so grouping N sessions over H hosts costs O(N) with no boxing,
+ * instead of one full pass over the sessions per host.
+ */
+public final class HostSessionCounter {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] hostIds;
+    private int[] counts;
+    private int mask;
+    private int size;
+
+    public HostSessionCounter() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedHosts Number of distinct hosts expected, used to presize the table
+     */
+    public HostSessionCounter(int expectedHosts) {
+        allocate(tableSizeFor(Math.max(MIN_CAPACITY, expectedHosts * 2)));
+    }
+
+    /**
+     * Counts the sessions of each host in a single pass.
+     * @param sessions The sessions to group
+     * @param hostIdOf Extracts the host id of a session
+     * @return Map of hostId to number of sessions
+     */
+    public static <T> Map<String, Integer> countByHost(Iterable<T> sessions, Function<T, String> hostIdOf) {
+        var counter = new HostSessionCounter();
+        for (T session : sessions) {
+            counter.increment(hostIdOf.apply(session));
+        }
+        return counter.toMap();
+    }
+
+    public void increment(String hostId) {
+        add(hostId, 1);
+    }
+
+    public void add(String hostId, int delta) {
+        if (hostId == null) {
+            return;
+        }
+        int slot = slotOf(hostId);
+        if (hostIds[slot] == null) {
+            hostIds[slot] = hostId;
+            counts[slot] = delta;
+            if (++size * 2 > hostIds.length) {
+                resize();
+            }
+        } else {
+            counts[slot] += delta;
+        }
+    }
+
+    public int get(String hostId) {
+        if (hostId == null) {
+            return 0;
+        }
+        int slot = slotOf(hostId);
+        return hostIds[slot] == null ? 0 : counts[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> sessionsPerHost = HashMap.newHashMap(size);
+        for (int slot = 0; slot < hostIds.length; slot++) {
+            if (hostIds[slot] != null) {
+                sessionsPerHost.put(hostIds[slot], counts[slot]);
+            }
+        }
+        return sessionsPerHost;
+    }
+
+    private int slotOf(String hostId) {
+        int slot = mix(hostId.hashCode()) & mask;
+        while (hostIds[slot] != null && !hostIds[slot].equals(hostId)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        var previousHostIds = hostIds;
+        var previousCounts = counts;
+        allocate(previousHostIds.length * 2);
+        for (int slot = 0; slot < previousHostIds.length; slot++) {
+            if (previousHostIds[slot] != null) {
+                int newSlot = slotOf(previousHostIds[slot]);
+                hostIds[newSlot] = previousHostIds[slot];
+                counts[newSlot] = previousCounts[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hostIds = new String[capacity];
+        counts = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int mix(int hash) {
+        // Spread the high bits so host ids differing only in their suffix don't cluster
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+}
@@ -2,20 +2,32 @@ package domain.utils;
 
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.autoscaling.v1.ScaleBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.dsl.base.PatchContext;
+import io.fabric8.kubernetes.client.dsl.base.PatchType;
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
+import java.net.HttpURLConnection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 
 @ApplicationScoped
 public class K8AutoScaler {
 
+    private static final int MAX_SCALE_ATTEMPTS = 5;
+
     @Inject
     KubernetesClient kubernetesClient;
 
+    @Inject
+    K8PodCache k8PodCache;
+
     /**
      * Retrieves all pods with matching labels
      * @param namespace The namespace to search in (null for all namespaces)
@@ -25,19 +37,8 @@ public class K8AutoScaler {
      */
     public List<Pod> getPodsWithLabel(String namespace, String labelKey, String labelValue) {
         try {
-            List<Pod> allPods;
-            
-            if (namespace != null) {
-                allPods = kubernetesClient.pods().inNamespace(namespace)
-                        .withLabel(labelKey, labelValue)
-                        .list().getItems();
-            } else {
-                allPods = kubernetesClient.pods().inAnyNamespace()
-                        .withLabel(labelKey, labelValue)
-                        .list().getItems();
-            }
-
-            return allPods;
+            // Served from the informer store, LIST is only used until the informer has synced
+            return k8PodCache.getPodsWithLabel(namespace, labelKey, labelValue);
         } catch (KubernetesClientException e) {
             Log.errorf("Error retrieving pods with label %s=%s: %s", labelKey, labelValue, e.getMessage());
             throw new RuntimeException("Failed to retrieve pods with label", e);
@@ -73,11 +74,7 @@ public class K8AutoScaler {
             Log.infof("Scaling deployment %s in namespace %s to %d replicas", 
                      deploymentName, namespace, replicas);
             
-            kubernetesClient.apps()
-                    .deployments()
-                    .inNamespace(namespace)
-                    .withName(deploymentName)
-                    .scale(replicas);
+            updateScale(deploymentName, namespace, replicas);
             
             Log.infof("Successfully scaled deployment %s to %d replicas", deploymentName, replicas);
             return true;
@@ -88,45 +85,73 @@ public class K8AutoScaler {
     }
 
     /**
-     * Patches a deployment to set the desired number of replicas
+     * Sets the desired number of replicas of a deployment through its scale subresource
      * @param deploymentName The name of the deployment to patch
      * @param namespace The namespace where the deployment is located
      * @param replicas The desired number of replicas
-     * @return true if successful, false otherwise
+     * @return true if successful, false if the deployment does not exist
      */
     public boolean patchDeploymentReplicas(String deploymentName, String namespace, int replicas) {
         try {
             Log.infof("Patching deployment %s in namespace %s to %d replicas", 
                      deploymentName, namespace, replicas);
             
-            Deployment deployment = kubernetesClient.apps()
-                    .deployments()
-                    .inNamespace(namespace)
-                    .withName(deploymentName)
-                    .get();
-            
-            if (deployment == null) {
-                Log.errorf("Deployment %s not found in namespace %s", deploymentName, namespace);
-                return false;
-            }
-            
-            deployment.getSpec().setReplicas(replicas);
-            
-            kubernetesClient.apps()
-                    .deployments()
-                    .inNamespace(namespace)
-                    .withName(deploymentName)
-                    .patch(deployment);
+            updateScale(deploymentName, namespace, replicas);
             
             Log.infof("Successfully patched deployment %s to %d replicas", deploymentName, replicas);
             return true;
         } catch (KubernetesClientException e) {
+            if (e.getCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                Log.errorf("Deployment %s not found in namespace %s", deploymentName, namespace);
+                return false;
+            }
             throw e;
-            // Log.errorf("Error patching deployment %s: %s", deploymentName, e.getMessage());
-            // return false;
         }
     }
 
+    /**
+     * Adds to or removes from the desired number of replicas of a deployment. The scale subresource is
+     * read and written back with its resourceVersion, so concurrent changes, e.g. from the rebalancer
+     * replicas of other shards, are retried on the new count instead of overwriting each other.
+     * @param deploymentName The name of the deployment to patch
+     * @param namespace The namespace where the deployment is located
+     * @param delta The replicas to add, negative to remove, the count never drops below zero
+     * @return true if successful, false if the deployment does not exist or kept changing
+     */
+    public boolean changeDeploymentReplicas(String deploymentName, String namespace, int delta) {
+        if (delta == 0) {
+            return true;
+        }
+        var deployment = kubernetesClient.apps().deployments().inNamespace(namespace).withName(deploymentName);
+        for (int attempt = 1; attempt <= MAX_SCALE_ATTEMPTS; attempt++) {
+            try {
+                var scale = deployment.scale();
+                if (scale == null) {
+                    Log.errorf("Deployment %s not found in namespace %s", deploymentName, namespace);
+                    return false;
+                }
+                var current = scale.getSpec().getReplicas() != null ? scale.getSpec().getReplicas() : 0;
+                var replicas = Math.max(0, current + delta);
+                Log.infof("Changing deployment %s in namespace %s by %d replicas, from %d to %d",
+                         deploymentName, namespace, delta, current, replicas);
+                scale.getSpec().setReplicas(replicas);
+                deployment.scale(scale);
+                return true;
+            } catch (KubernetesClientException e) {
+                if (e.getCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                    Log.errorf("Deployment %s not found in namespace %s", deploymentName, namespace);
+                    return false;
+                }
+                if (e.getCode() != HttpURLConnection.HTTP_CONFLICT) {
+                    throw e;
+                }
+                Log.infof("Replicas of deployment %s changed concurrently, retrying (attempt %d)", deploymentName, attempt);
+            }
+        }
+        Log.errorf("Gave up changing deployment %s by %d replicas after %d conflicting attempts", deploymentName, delta, MAX_SCALE_ATTEMPTS);
+        return false;
+    }
+
     /**
      * Gets the current number of replicas for a deployment
      * @param deploymentName The name of the deployment
@@ -166,23 +191,7 @@ public class K8AutoScaler {
             Log.infof("Patching pod %s in namespace %s with label %s=%s", 
                      podName, namespace, labelKey, labelValue);
             
-            Pod pod = kubernetesClient.pods()
-                    .inNamespace(namespace)
-                    .withName(podName)
-                    .get();
-            
-            if (pod == null) {
-                Log.errorf("Pod %s not found in namespace %s", podName, namespace);
-                return false;
-            }
-            
-            // Add or update the label
-            pod.getMetadata().getLabels().put(labelKey, labelValue);
-            
-            kubernetesClient.pods()
-                    .inNamespace(namespace)
-                    .withName(podName)
-                    .patch(pod);
+            mergePatchPodMetadata(podName, namespace, "labels", labelKey, labelValue);
             
             Log.infof("Successfully patched pod %s with label %s=%s", podName, labelKey, labelValue);
             return true;
@@ -192,28 +201,44 @@ public class K8AutoScaler {
         }
     }
 
+    /**
+     * Patches the label of many pods concurrently, one small merge patch per pod
+     * @param pods The pods to patch
+     * @param labelKey The label key to add or update
+     * @param labelValue The label value to set
+     * @return The number of pods successfully patched
+     */
+    public int patchPodLabels(List<Pod> pods, String labelKey, String labelValue) {
+        if (pods.isEmpty()) {
+            return 0;
+        }
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var patches = pods.stream()
+                    .map(pod -> executor.submit(() -> patchPodLabel(pod.getMetadata().getName(), pod.getMetadata().getNamespace(), labelKey, labelValue)))
+                    .toList();
+            int patched = 0;
+            for (var patch : patches) {
+                try {
+                    if (patch.get()) {
+                        patched++;
+                    }
+                } catch (ExecutionException e) {
+                    Log.errorf("Error patching pod label %s=%s: %s", labelKey, labelValue, e.getCause().getMessage());
+                }
+            }
+            return patched;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while patching pod labels", e);
+        }
+    }
+
     public boolean patchPodAnnotation(String podName, String namespace, String annotationKey, String annotationValue) {
         try {
             Log.infof("Patching pod %s in namespace %s with annotation %s=%s", 
                      podName, namespace, annotationKey, annotationValue);
             
-            Pod pod = kubernetesClient.pods()
-                    .inNamespace(namespace)
-                    .withName(podName)
-                    .get();
-            
-            if (pod == null) {
-                Log.errorf("Pod %s not found in namespace %s", podName, namespace);
-                return false;
-            }
-            
-            // Add or update the annotation
-            pod.getMetadata().getAnnotations().put(annotationKey, annotationValue);
-            
-            kubernetesClient.pods()
-                    .inNamespace(namespace)
-                    .withName(podName)
-                    .patch(pod);
+            mergePatchPodMetadata(podName, namespace, "annotations", annotationKey, annotationValue);
             
             Log.infof("Successfully patched pod %s with annotation %s=%s", podName, annotationKey, annotationValue);
             return true;
@@ -222,4 +247,26 @@ public class K8AutoScaler {
             return false;
         }
     }
+
+    private void updateScale(String deploymentName, String namespace, int replicas) {
+        // PUT on the scale subresource without a resourceVersion, no prior GET of the deployment
+        kubernetesClient.apps()
+                .deployments()
+                .inNamespace(namespace)
+                .withName(deploymentName)
+                .scale(new ScaleBuilder()
+                        .withNewMetadata().withName(deploymentName).withNamespace(namespace).endMetadata()
+                        .withNewSpec().withReplicas(replicas).endSpec()
+                        .build());
+    }
+
+    private void mergePatchPodMetadata(String podName, String namespace, String field, String key, String value) {
+        // {"metadata":{"<field>":{"<key>":"<value>"}}}, a missing pod surfaces as a 404
+        var patch = kubernetesClient.getKubernetesSerialization()
+                .asJson(Map.of("metadata", Map.of(field, Map.of(key, value))));
+        kubernetesClient.pods()
+                .inNamespace(namespace)
+                .withName(podName)
+                .patch(PatchContext.of(PatchType.JSON_MERGE), patch);
+    }
 }
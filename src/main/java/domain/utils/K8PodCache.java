@@ -0,0 +1,111 @@
+package domain.utils;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Local pod store fed by one SharedIndexInformer per namespace, indexed by the {@code traffic}
+ * label. The informer is started on the first read of a namespace; until it has
+ * synced, reads fall back to a LIST against the API server.
+ * Pods returned from the store are shared with the informer and must not be mutated.
+ */
+@ApplicationScoped
+public class K8PodCache {
+
+    public static final String TRAFFIC_LABEL = "traffic";
+    static final String TRAFFIC_INDEX = "traffic";
+
+    private static final String ANY_NAMESPACE = "*";
+
+    @Inject
+    KubernetesClient kubernetesClient;
+
+    @ConfigProperty(name = "app.connection-rebalancer.kubernetes.pod-cache.enabled", defaultValue = "true")
+    boolean podCacheEnabled;
+
+    @ConfigProperty(name = "app.connection-rebalancer.kubernetes.pod-cache.resync-interval", defaultValue = "10m")
+    Duration resyncInterval;
+
+    private final Map<String, SharedIndexInformer<Pod>> informers = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieves the pods whose label matches, from the informer store once it has synced
+     * @param namespace The namespace to search in (null for all namespaces)
+     * @param labelKey The label key to match
+     * @param labelValue The label value to match
+     * @return List of pods matching the label criteria
+     */
+    public List<Pod> getPodsWithLabel(String namespace, String labelKey, String labelValue) {
+        var informer = syncedInformer(namespace);
+        if (informer.isEmpty()) {
+            return listPodsWithLabel(namespace, labelKey, labelValue);
+        }
+        if (TRAFFIC_LABEL.equals(labelKey)) {
+            return informer.get().getIndexer().byIndex(TRAFFIC_INDEX, labelValue);
+        }
+        return informer.get().getStore().list().stream()
+                .filter(pod -> pod.getMetadata().getLabels() != null
+                        && labelValue.equals(pod.getMetadata().getLabels().get(labelKey)))
+                .toList();
+    }
+
+    @PreDestroy
+    void stopInformers() {
+        informers.values().forEach(SharedIndexInformer::stop);
+    }
+
+    private Optional<SharedIndexInformer<Pod>> syncedInformer(String namespace) {
+        if (!podCacheEnabled) {
+            return Optional.empty();
+        }
+        var informer = informers.computeIfAbsent(namespace == null ? ANY_NAMESPACE : namespace, key -> startInformer(key, namespace));
+        return informer.hasSynced() ? Optional.of(informer) : Optional.empty();
+    }
+
+    private SharedIndexInformer<Pod> startInformer(String key, String namespace) {
+        var pods = namespace != null
+                ? kubernetesClient.pods().inNamespace(namespace)
+                : kubernetesClient.pods().inAnyNamespace();
+        var informer = pods.runnableInformer(resyncInterval.toMillis());
+        informer.addIndexers(Map.<String, Function<Pod, List<String>>>of(
+                TRAFFIC_INDEX, pod -> pod.getMetadata().getLabels() == null || pod.getMetadata().getLabels().get(TRAFFIC_LABEL) == null
+                        ? List.of()
+                        : List.of(pod.getMetadata().getLabels().get(TRAFFIC_LABEL))));
+        informer.start().whenCompleteAsync((ignored, e) -> {
+            if (e != null) {
+                Log.errorf("Pod informer for namespace %s failed to start: %s", namespace, e.getMessage());
+                // Let the next read start a fresh informer, reads keep falling back to LIST meanwhile
+                informers.remove(key, informer);
+                informer.stop();
+            } else {
+                Log.infof("Pod informer for namespace %s synced", namespace);
+            }
+        });
+        return informer;
+    }
+
+    private List<Pod> listPodsWithLabel(String namespace, String labelKey, String labelValue) {
+        if (namespace != null) {
+            return kubernetesClient.pods().inNamespace(namespace)
+                    .withLabel(labelKey, labelValue)
+                    .list().getItems();
+        }
+        return kubernetesClient.pods().inAnyNamespace()
+                .withLabel(labelKey, labelValue)
+                .list().getItems();
+    }
+}
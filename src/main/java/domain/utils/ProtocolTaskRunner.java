@@ -0,0 +1,191 @@
+package domain.utils;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Runs the WebSocket, SSE and gRPC branches of a rebalancer stage side by side, one virtual
+ * thread per branch, so a tick takes about as long as its slowest protocol instead of the sum
+ * of all three. The branches share one deadline of {@code analysis.protocol-timeout}; when a
+ * branch fails or the deadline passes, the branches still running are interrupted and the
+ * stage fails, as it would have when the protocols ran one after another. Only the analysis is
+ * cut short: the branches scale through {@link ScalingGate}, which serializes the orchestrator
+ * calls of an app and finishes a scaling step once it has started. With
+ * {@code analysis.parallel=false} the branches run in order on the calling thread.
+ * <p>
+ * The reactive pipeline joins its branches as {@link Uni}s with the same deadline and
+ * fail-fast semantics, and hands the steps that still call blocking clients to
+ * {@link #offload(Supplier)}, so no worker thread is held while waiting on I/O.
+ */
+@ApplicationScoped
+public class ProtocolTaskRunner {
+
+    @ConfigProperty(name = "app.connection-rebalancer.analysis.parallel", defaultValue = "true")
+    boolean parallel;
+
+    @ConfigProperty(name = "app.connection-rebalancer.analysis.protocol-timeout", defaultValue = "30s")
+    Duration protocolTimeout;
+
+    private final ExecutorService blockingExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rebalancer-blocking-", 0).factory());
+
+    /**
+     * @return The three protocol branches of a stage, keeping their order for sequential runs
+     */
+    public static <T> Map<String, T> branches(String firstName, T first, String secondName, T second, String thirdName, T third) {
+        Map<String, T> branches = new LinkedHashMap<>();
+        branches.put(firstName, first);
+        branches.put(secondName, second);
+        branches.put(thirdName, third);
+        return branches;
+    }
+
+    /**
+     * Runs every branch of a stage.
+     * @param stage Name of the stage, used in thread names and errors
+     * @param branches Map of branch name to its work, in the order used when running sequentially
+     */
+    public void runAll(String stage, Map<String, Runnable> branches) {
+        Map<String, Callable<Void>> callables = new LinkedHashMap<>();
+        branches.forEach((name, branch) -> callables.put(name, () -> {
+            branch.run();
+            return null;
+        }));
+        callAll(stage, callables);
+    }
+
+    /**
+     * Runs every branch of a stage and collects the results.
+     * @param stage Name of the stage, used in thread names and errors
+     * @param branches Map of branch name to its work, in the order used when running sequentially
+     * @return Map of branch name to its result
+     */
+    public <T> Map<String, T> callAll(String stage, Map<String, Callable<T>> branches) {
+        Map<String, T> results = HashMap.newHashMap(branches.size());
+        if (!parallel || branches.size() < 2) {
+            branches.forEach((name, branch) -> results.put(name, call(stage, name, branch)));
+            return results;
+        }
+
+        var executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(stage + "-", 0).factory());
+        try {
+            var completion = new ExecutorCompletionService<T>(executor);
+            Map<Future<T>, String> names = new HashMap<>();
+            branches.forEach((name, branch) -> names.put(completion.submit(branch), name));
+
+            var deadline = System.nanoTime() + protocolTimeout.toNanos();
+            while (results.size() < branches.size()) {
+                var done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    var pending = names.values().stream().filter(name -> !results.containsKey(name)).toList();
+                    throw new IllegalStateException(stage + " timed out after " + protocolTimeout + " waiting for " + pending,
+                            new TimeoutException());
+                }
+                var name = names.get(done);
+                try {
+                    results.put(name, done.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(stage + " failed in " + name + ": " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(stage + " was interrupted", e);
+        } finally {
+            // Interrupts the branches still running once one failed or the deadline passed
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Joins every branch of a stage. The first branch to fail or the deadline cancels the others.
+     * @param stage Name of the stage, used in errors
+     * @param branches Map of branch name to its pipeline, in the order used when running sequentially
+     * @return Map of branch name to its result
+     */
+    public <T> Uni<Map<String, T>> joinAll(String stage, Map<String, Uni<T>> branches) {
+        List<String> names = new ArrayList<>(branches.keySet());
+        List<Uni<T>> unis = new ArrayList<>(branches.size());
+        branches.forEach((name, branch) -> unis.add(branch.onFailure(e -> !(e instanceof IllegalStateException))
+                .transform(e -> new IllegalStateException(stage + " failed in " + name + ": " + e.getMessage(), e))));
+        if (unis.isEmpty()) {
+            return Uni.createFrom().item(Map.of());
+        }
+
+        var joined = parallel ? Uni.join().all(unis).andFailFast() : inSequence(unis);
+        return joined
+                .ifNoItem().after(protocolTimeout).failWith(() -> new IllegalStateException(
+                        stage + " timed out after " + protocolTimeout + " waiting for " + names, new TimeoutException()))
+                .map(results -> {
+                    Map<String, T> byName = HashMap.newHashMap(results.size());
+                    for (int i = 0; i < results.size(); i++) {
+                        byName.put(names.get(i), results.get(i));
+                    }
+                    return byName;
+                });
+    }
+
+    /**
+     * Runs a step that calls blocking clients, e.g. the orchestrator, on its own virtual thread.
+     * @return A lazy Uni, the step runs once per subscription
+     */
+    public <T> Uni<T> offload(Supplier<T> work) {
+        return Uni.createFrom().item(work).runSubscriptionOn(blockingExecutor);
+    }
+
+    /**
+     * Variant of {@link #offload(Supplier)} for steps without a result.
+     */
+    public Uni<Void> offload(Runnable work) {
+        return offload(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        blockingExecutor.shutdownNow();
+    }
+
+    private static <T> Uni<List<T>> inSequence(List<Uni<T>> unis) {
+        Uni<List<T>> results = Uni.createFrom().item(() -> new ArrayList<>(unis.size()));
+        for (var uni : unis) {
+            results = results.flatMap(collected -> uni.map(result -> {
+                collected.add(result);
+                return collected;
+            }));
+        }
+        return results;
+    }
+
+    private <T> T call(String stage, String name, Callable<T> branch) {
+        try {
+            return branch.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(stage + " failed in " + name + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package domain.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Greedy water-filling planner shared by the WebSocket, SSE and gRPC balance passes. The
+ * balanced level of every host is its share of all sessions in proportion to its capacity.
+ * Donors are brought down to their level, and no more sessions are moved than the recipients
+ * have room for below theirs, so the plan moves the fewest sessions that reach balance.
+ * Donors and recipients are matched largest to largest, which keeps the number of transfers
+ * low. Planning H hosts costs O(H log H).
+ */
+public final class RebalancePlanner {
+
+    public record HostLoad(int sessions, int capacity) {
+    }
+
+    public record Transfer(String fromHostId, String toHostId, int sessions) {
+    }
+
+    /**
+     * @param targets Balanced session count of every host
+     * @param transfers Sessions to move from each donor to each recipient
+     */
+    public record Plan(Map<String, Integer> targets, List<Transfer> transfers) {
+
+        /**
+         * @return Map of donor hostId to the total sessions it should drop, largest donor first
+         */
+        public Map<String, Integer> dropsPerHost() {
+            Map<String, Integer> drops = new LinkedHashMap<>();
+            transfers.forEach(transfer -> drops.merge(transfer.fromHostId(), transfer.sessions(), Integer::sum));
+            return drops;
+        }
+
+        public int sessionsMoved() {
+            return transfers.stream().mapToInt(Transfer::sessions).sum();
+        }
+    }
+
+    private record Imbalance(String hostId, int sessions) {
+    }
+
+    private RebalancePlanner() {
+    }
+
+    /**
+     * Plans the moves that bring the donors down to their balanced level.
+     * @param hosts Load and capacity of every host taking part in the balance
+     * @param donors Hosts allowed to give sessions away
+     * @param recipients Hosts allowed to receive sessions
+     * @return The plan, empty when there is nothing to move
+     */
+    public static Plan plan(Map<String, HostLoad> hosts, Collection<String> donors, Collection<String> recipients) {
+        var targets = targets(hosts);
+        if (targets.isEmpty()) {
+            return new Plan(Map.of(), List.of());
+        }
+
+        var excesses = imbalances(donors, hostId -> hosts.get(hostId).sessions() - targets.get(hostId), hosts);
+        var deficits = imbalances(recipients, hostId -> targets.get(hostId) - hosts.get(hostId).sessions(), hosts);
+
+        List<Transfer> transfers = new ArrayList<>();
+        int donor = 0;
+        int recipient = 0;
+        int excess = excesses.isEmpty() ? 0 : excesses.get(0).sessions();
+        int deficit = deficits.isEmpty() ? 0 : deficits.get(0).sessions();
+        while (donor < excesses.size() && recipient < deficits.size()) {
+            int sessions = Math.min(excess, deficit);
+            transfers.add(new Transfer(excesses.get(donor).hostId(), deficits.get(recipient).hostId(), sessions));
+            excess -= sessions;
+            deficit -= sessions;
+            if (excess == 0 && ++donor < excesses.size()) {
+                excess = excesses.get(donor).sessions();
+            }
+            if (deficit == 0 && ++recipient < deficits.size()) {
+                deficit = deficits.get(recipient).sessions();
+            }
+        }
+        return new Plan(targets, List.copyOf(transfers));
+    }
+
+    /**
+     * Splits the sessions over the hosts in proportion to their capacity. The sessions left by
+     * rounding down go to the hosts with the largest remainders, so the targets add up to the total.
+     */
+    private static Map<String, Integer> targets(Map<String, HostLoad> hosts) {
+        long totalSessions = 0;
+        long totalCapacity = 0;
+        for (var load : hosts.values()) {
+            totalSessions += load.sessions();
+            totalCapacity += Math.max(0, load.capacity());
+        }
+        if (totalCapacity <= 0) {
+            return Map.of();
+        }
+
+        Map<String, Integer> targets = HashMap.newHashMap(hosts.size());
+        List<Map.Entry<String, Long>> remainders = new ArrayList<>(hosts.size());
+        long assigned = 0;
+        for (var host : hosts.entrySet()) {
+            long share = totalSessions * Math.max(0, host.getValue().capacity());
+            targets.put(host.getKey(), (int) (share / totalCapacity));
+            remainders.add(Map.entry(host.getKey(), share % totalCapacity));
+            assigned += share / totalCapacity;
+        }
+        remainders.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        for (int i = 0; i < totalSessions - assigned; i++) {
+            targets.merge(remainders.get(i).getKey(), 1, Integer::sum);
+        }
+        return targets;
+    }
+
+    private static List<Imbalance> imbalances(Collection<String> hostIds, ToIntFunction<String> imbalanceOf,
+            Map<String, HostLoad> hosts) {
+        List<Imbalance> imbalances = new ArrayList<>(hostIds.size());
+        for (var hostId : hostIds) {
+            if (hosts.containsKey(hostId)) {
+                int sessions = imbalanceOf.applyAsInt(hostId);
+                if (sessions > 0) {
+                    imbalances.add(new Imbalance(hostId, sessions));
+                }
+            }
+        }
+        imbalances.sort(Comparator.comparingInt(Imbalance::sessions).reversed().thenComparing(Imbalance::hostId));
+        return imbalances;
+    }
+}
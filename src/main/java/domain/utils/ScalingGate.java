@@ -0,0 +1,109 @@
+package domain.utils;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the orchestrator calls made for one app. The WebSocket and SSE branches of a pass
+ * scale the same container app, and on Kubernetes all three protocols scale the same deployment,
+ * so each scaling step takes the lock of its app instead of racing the other branches.
+ * <p>
+ * A step runs on its own virtual thread and is always run to the end once it has started. The
+ * branch waiting for it may be interrupted when its stage fails or times out, but the orchestrator
+ * is never left half-way, e.g. with pods relabeled and their replicas not yet added.
+ * <p>
+ * The branches of a pass size the app from the same snapshot, each for its own sessions, so
+ * replica changes go through {@link #unclaimed(String, Object, int)}: the app grows or shrinks by
+ * the largest change one protocol asked for in that pass, not by the sum of all of them.
+ */
+@ApplicationScoped
+public class ScalingGate {
+
+    private record Claim(WeakReference<Object> pass, int servers) {
+    }
+
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<String, Claim> claims = new ConcurrentHashMap<>();
+    private final ExecutorService stepExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rebalancer-scaling-", 0).factory());
+
+    /**
+     * Runs a scaling step of the app once no other step of the same app is running.
+     * @param app Name of the container app or Kubernetes deployment the step scales
+     * @param step Orchestrator calls of the step
+     */
+    public void run(String app, Runnable step) {
+        var lock = locks.computeIfAbsent(app, name -> new ReentrantLock());
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            // Nothing was scaled yet, the step is skipped
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to scale " + app, e);
+        }
+        try {
+            awaitUninterruptibly(app, stepExecutor.submit(step));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claims a replica change for the app in a pass. Must be called from a step of {@link #run(String, Runnable)}.
+     * @param app Name of the container app or Kubernetes deployment
+     * @param pass Identifies the pass, the snapshot its branches share
+     * @param servers Replicas to add, negative to remove
+     * @return The part of the change the other branches of the pass have not applied yet, 0 when none is left
+     */
+    public int unclaimed(String app, Object pass, int servers) {
+        if (servers == 0) {
+            return 0;
+        }
+        var key = app + (servers > 0 ? ":out" : ":in");
+        var claim = claims.get(key);
+        var claimed = claim != null && claim.pass().get() == pass ? claim.servers() : 0;
+        if (Math.abs(servers) <= Math.abs(claimed)) {
+            return 0;
+        }
+        claims.put(key, new Claim(new WeakReference<>(pass), servers));
+        return servers - claimed;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Lets the running steps finish, the orchestrator is not left half-scaled on shutdown
+        stepExecutor.shutdown();
+    }
+
+    private static void awaitUninterruptibly(String app, Future<?> step) {
+        var interrupted = false;
+        try {
+            while (true) {
+                try {
+                    step.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException runtimeException) {
+                        throw runtimeException;
+                    }
+                    throw new IllegalStateException("Scaling " + app + " failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
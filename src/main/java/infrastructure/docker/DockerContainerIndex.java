@@ -0,0 +1,238 @@
+package infrastructure.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Index of the running containers keyed by id, name and network IP, so mapping a Consul
+ * service address to a container is a map lookup instead of a {@code /containers/json}
+ * listing walked network by network. The index is rebuilt from a full listing when it is
+ * older than the resync interval, or when a lookup misses (a container the index has not
+ * seen yet), and is kept current in between by {@link #put} / {@link #remove}. While the
+ * {@link DockerEventsListener} is connected the periodic resync is suspended.
+ * <p>
+ * Lookups never wait on a listing. A resync lists the containers without holding the index
+ * lock and swaps the rebuilt maps in under it, replaying the puts and removes that arrived
+ * while the listing was in flight. Only one listing runs at a time, lookups that find one
+ * running are served from the current maps.
+ */
+@ApplicationScoped
+public class DockerContainerIndex {
+
+    private static final Logger logger = Logger.getLogger(DockerContainerIndex.class.getName());
+
+    // Bounds the listings a burst of lookups for unknown IPs can trigger
+    private static final long MIN_MISS_RESYNC_NANOS = Duration.ofSeconds(1).toNanos();
+
+    @ConfigProperty(name = "app.connection-rebalancer.docker.container-index-resync-interval", defaultValue = "30s")
+    Duration resyncInterval;
+
+    public record ContainerEntry(String id, String name, String image, List<String> ipAddresses) {
+    }
+
+    private record Containers(Map<String, ContainerEntry> byId, Map<String, ContainerEntry> byName,
+            Map<String, ContainerEntry> byIp) {
+
+        Containers() {
+            this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+
+        void put(ContainerEntry entry) {
+            remove(entry.id());
+            byId.put(entry.id(), entry);
+            byName.put(entry.name(), entry);
+            entry.ipAddresses().forEach(ip -> byIp.put(ip, entry));
+        }
+
+        void remove(String containerId) {
+            var entry = byId.remove(containerId);
+            if (entry != null) {
+                byName.remove(entry.name(), entry);
+                entry.ipAddresses().forEach(ip -> byIp.remove(ip, entry));
+            }
+        }
+    }
+
+    private final DockerEngineClient dockerEngineClient;
+    private final ReentrantLock resyncLock = new ReentrantLock();
+
+    private volatile Containers containers = new Containers();
+    // Guarded by this, the changes to replay on the maps of the running resync
+    private List<Consumer<Containers>> changesDuringResync;
+    private volatile long lastResyncNanos;
+    private volatile boolean synced;
+    private volatile boolean live;
+
+    public DockerContainerIndex(DockerEngineClient dockerEngineClient) {
+        this.dockerEngineClient = dockerEngineClient;
+    }
+
+    public Optional<ContainerEntry> findByIp(String ipAddress) {
+        return find(Containers::byIp, ipAddress);
+    }
+
+    public Optional<ContainerEntry> findByName(String name) {
+        return find(Containers::byName, stripSlash(name));
+    }
+
+    /**
+     * Marks the index as fed by the docker events stream, which suspends the periodic resync.
+     */
+    public void setLive(boolean live) {
+        this.live = live;
+    }
+
+    /**
+     * @param namePart Part of the container name, as matched by the docker {@code name} filter
+     * @return The running containers whose name contains namePart
+     */
+    public List<ContainerEntry> containersMatchingName(String namePart) {
+        resyncIfStale();
+        return containers.byId().values().stream()
+                .filter(entry -> entry.name().contains(namePart))
+                .toList();
+    }
+
+    /**
+     * @return Snapshot of the running containers
+     */
+    public List<ContainerEntry> containers() {
+        resyncIfStale();
+        return List.copyOf(containers.byId().values());
+    }
+
+    public synchronized void put(ContainerEntry entry) {
+        containers.put(entry);
+        if (changesDuringResync != null) {
+            changesDuringResync.add(rebuilt -> rebuilt.put(entry));
+        }
+    }
+
+    public synchronized void remove(String containerId) {
+        containers.remove(containerId);
+        if (changesDuringResync != null) {
+            changesDuringResync.add(rebuilt -> rebuilt.remove(containerId));
+        }
+    }
+
+    /**
+     * Rebuilds the index from a full {@code /containers/json} listing, after the listing
+     * already running if there is one.
+     * @return true if the listing succeeded
+     */
+    public boolean resync() {
+        resyncLock.lock();
+        try {
+            return listContainers();
+        } finally {
+            resyncLock.unlock();
+        }
+    }
+
+    private boolean listContainers() {
+        synchronized (this) {
+            changesDuringResync = new ArrayList<>();
+        }
+        try {
+            var response = dockerEngineClient.get("/containers/json");
+            if (response.statusCode() != 200) {
+                logger.warning("Failed to list containers: " + response.body());
+                return false;
+            }
+            var rebuilt = new Containers();
+            for (var container : dockerEngineClient.readTree(response.body())) {
+                rebuilt.put(toEntry(container));
+            }
+            synchronized (this) {
+                // An event that arrived during the listing is newer than what the listing saw
+                changesDuringResync.forEach(change -> change.accept(rebuilt));
+                containers = rebuilt;
+                lastResyncNanos = System.nanoTime();
+                synced = true;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error resyncing container index: " + e.getMessage(), e);
+            return false;
+        } finally {
+            synchronized (this) {
+                changesDuringResync = null;
+            }
+        }
+    }
+
+    /**
+     * Maps a container as listed by {@code /containers/json} or inspected by {@code /containers/{id}/json}.
+     */
+    public static ContainerEntry toEntry(JsonNode container) {
+        var id = container.get("Id").asText();
+        String name;
+        if (container.hasNonNull("Names") && container.get("Names").size() > 0) {
+            name = container.get("Names").get(0).asText();
+        } else {
+            name = container.path("Name").asText(id);
+        }
+        // Inspect puts the image digest in Image and the image name in Config.Image
+        var image = container.has("Config") ? container.path("Config").path("Image").asText() : container.path("Image").asText();
+        List<String> ipAddresses = new ArrayList<>();
+        for (var network : container.path("NetworkSettings").path("Networks")) {
+            var ipAddress = network.path("IPAddress").asText();
+            if (!ipAddress.isEmpty()) {
+                ipAddresses.add(ipAddress);
+            }
+        }
+        return new ContainerEntry(id, stripSlash(name), image, List.copyOf(ipAddresses));
+    }
+
+    private Optional<ContainerEntry> find(Function<Containers, Map<String, ContainerEntry>> index, String key) {
+        boolean resynced = resyncIfStale();
+        var entry = index.apply(containers).get(key);
+        if (entry == null && !resynced && System.nanoTime() - lastResyncNanos >= MIN_MISS_RESYNC_NANOS && tryResync()) {
+            entry = index.apply(containers).get(key);
+        }
+        return Optional.ofNullable(entry);
+    }
+
+    private boolean resyncIfStale() {
+        if (synced && (live || System.nanoTime() - lastResyncNanos < resyncInterval.toNanos())) {
+            return false;
+        }
+        // Nothing to serve before the first listing, so that one is waited for
+        return synced ? tryResync() : resync();
+    }
+
+    /**
+     * Lists the containers unless another listing is running, whose result the caller then reads.
+     */
+    private boolean tryResync() {
+        if (!resyncLock.tryLock()) {
+            return false;
+        }
+        try {
+            return listContainers();
+        } finally {
+            resyncLock.unlock();
+        }
+    }
+
+    private static String stripSlash(String name) {
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+}
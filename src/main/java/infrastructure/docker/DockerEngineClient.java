@@ -0,0 +1,394 @@
+package infrastructure.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Single long-lived client for the Docker Engine API shared by all container-runtime operations.
+ * Requests go through one keep-alive {@link HttpClient} to the socket proxy, or straight to the
+ * engine socket over a Unix-domain {@link SocketChannel} when {@code socket-proxy.uri} is a
+ * {@code unix://} path (e.g. {@code unix:///var/run/docker.sock}). A channel has no timeouts of
+ * its own, so a watchdog closes it once {@code docker.connect-timeout} or
+ * {@code docker.request-timeout} has passed, which fails the blocked call like an HTTP timeout.
+ */
+@ApplicationScoped
+public class DockerEngineClient {
+
+    private static final String UNIX_SCHEME = "unix://";
+
+    @ConfigProperty(name = "socket-proxy.uri")
+    String dockerSocketProxyUri;
+
+    @ConfigProperty(name = "app.connection-rebalancer.docker.connect-timeout", defaultValue = "2s")
+    Duration connectTimeout;
+
+    @ConfigProperty(name = "app.connection-rebalancer.docker.request-timeout", defaultValue = "30s")
+    Duration requestTimeout;
+
+    public record DockerResponse(int statusCode, String body) {
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private HttpClient httpClient;
+    private UnixDomainSocketAddress unixSocketAddress;
+    private ScheduledExecutorService watchdog;
+
+    public DockerEngineClient(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void init() {
+        if (dockerSocketProxyUri.startsWith(UNIX_SCHEME)) {
+            unixSocketAddress = UnixDomainSocketAddress.of(dockerSocketProxyUri.substring(UNIX_SCHEME.length()));
+            watchdog = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("docker-socket-watchdog").factory());
+        } else {
+            httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(connectTimeout)
+                    .build();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+
+    public ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    public DockerResponse get(String path) throws IOException, InterruptedException {
+        return send("GET", path, null);
+    }
+
+    /**
+     * @param path The engine API path, including the query string
+     * @param jsonBody The request body, null to send none
+     */
+    public DockerResponse post(String path, String jsonBody) throws IOException, InterruptedException {
+        return send("POST", path, jsonBody);
+    }
+
+    public JsonNode readTree(String body) throws IOException {
+        return objectMapper.readTree(body);
+    }
+
+    private DockerResponse send(String method, String path, String jsonBody) throws IOException, InterruptedException {
+        if (unixSocketAddress != null) {
+            return sendOverUnixSocket(method, path, jsonBody);
+        }
+        var request = HttpRequest.newBuilder()
+                .uri(URI.create(dockerSocketProxyUri + path))
+                .timeout(requestTimeout);
+        if (jsonBody != null) {
+            request.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(jsonBody));
+        } else {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        var response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        return new DockerResponse(response.statusCode(), response.body());
+    }
+
+    /**
+     * Opens a long-lived streaming response such as {@code /events}. The returned stream is
+     * already de-chunked; closing it closes the underlying connection. Only opening the stream is
+     * bounded by the connect and request timeouts, the body is read for as long as the engine sends it.
+     * @param path The engine API path, including the query string
+     */
+    public InputStream stream(String path) throws IOException, InterruptedException {
+        if (unixSocketAddress != null) {
+            var channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                connect(channel, path);
+                try (var deadline = new Deadline(channel, requestTimeout)) {
+                    writeRequest(channel, "GET", path, null);
+                    var in = new BufferedInputStream(Channels.newInputStream(channel));
+                    var head = readHead(in);
+                    if (head.statusCode() != 200) {
+                        throw new IOException("Docker stream " + path + " failed with status " + head.statusCode());
+                    }
+                    // The watchdog may have closed the channel right after the head arrived
+                    if (!deadline.cancel()) {
+                        throw new HttpTimeoutException("Docker stream " + path + " not opened within " + requestTimeout);
+                    }
+                    return head.chunked() ? new ChunkedInputStream(in) : in;
+                } catch (IOException e) {
+                    throw e instanceof HttpTimeoutException ? e : timeoutOr(e, "Docker stream " + path + " not opened within " + requestTimeout);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        // No request timeout, the stream stays open until the engine or the caller closes it
+        var request = HttpRequest.newBuilder()
+                .uri(URI.create(dockerSocketProxyUri + path))
+                .GET()
+                .build();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            try (var body = response.body()) {
+                throw new IOException("Docker stream " + path + " failed with status " + response.statusCode()
+                        + ": " + new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return response.body();
+    }
+
+    private DockerResponse sendOverUnixSocket(String method, String path, String jsonBody) throws IOException {
+        try (var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            connect(channel, path);
+            var deadline = new Deadline(channel, requestTimeout);
+            try {
+                writeRequest(channel, method, path, jsonBody);
+                return readResponse(new BufferedInputStream(Channels.newInputStream(channel)));
+            } catch (IOException e) {
+                throw timeoutOr(e, "Docker request " + method + " " + path + " timed out after " + requestTimeout);
+            } finally {
+                deadline.close();
+            }
+        }
+    }
+
+    private void connect(SocketChannel channel, String path) throws IOException {
+        var deadline = new Deadline(channel, connectTimeout);
+        try {
+            channel.connect(unixSocketAddress);
+        } catch (IOException e) {
+            if (closedByWatchdog(e)) {
+                throw new HttpConnectTimeoutException("Docker socket not connected within " + connectTimeout + " for " + path);
+            }
+            throw e;
+        } finally {
+            deadline.close();
+        }
+    }
+
+    /**
+     * @return A timeout exception when the failure comes from the watchdog closing the channel, the failure otherwise
+     */
+    private static IOException timeoutOr(IOException e, String timeoutMessage) {
+        return closedByWatchdog(e) ? new HttpTimeoutException(timeoutMessage) : e;
+    }
+
+    private static boolean closedByWatchdog(IOException e) {
+        // An interrupt closes the channel too, it must not be reported as a timeout
+        return e instanceof AsynchronousCloseException && !(e instanceof ClosedByInterruptException);
+    }
+
+    /**
+     * Closes the channel once the timeout has passed, which unblocks a thread reading, writing or
+     * connecting it with an {@link AsynchronousCloseException}. Closing the deadline cancels it.
+     */
+    private final class Deadline implements AutoCloseable {
+
+        private final SocketChannel channel;
+        private final ScheduledFuture<?> expiry;
+
+        Deadline(SocketChannel channel, Duration timeout) {
+            this.channel = channel;
+            this.expiry = watchdog.schedule(this::expire, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return Whether the deadline was cancelled before it closed the channel
+         */
+        boolean cancel() {
+            return expiry.cancel(false);
+        }
+
+        @Override
+        public void close() {
+            expiry.cancel(false);
+        }
+
+        private void expire() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    private void writeRequest(SocketChannel channel, String method, String path, String jsonBody) throws IOException {
+        var body = jsonBody == null ? new byte[0] : jsonBody.getBytes(StandardCharsets.UTF_8);
+        var head = method + " " + path + " HTTP/1.1\r\n"
+                + "Host: docker\r\n"
+                + "Connection: close\r\n"
+                + (jsonBody != null ? "Content-Type: application/json\r\n" : "")
+                + "Content-Length: " + body.length + "\r\n\r\n";
+        var request = ByteBuffer.allocate(head.length() + body.length)
+                .put(head.getBytes(StandardCharsets.US_ASCII))
+                .put(body)
+                .flip();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+    }
+
+    private record ResponseHead(int statusCode, long contentLength, boolean chunked) {
+    }
+
+    private ResponseHead readHead(InputStream in) throws IOException {
+        var statusLine = readLine(in);
+        if (statusLine == null || !statusLine.startsWith("HTTP/")) {
+            throw new IOException("Malformed response from docker socket: " + statusLine);
+        }
+        int statusCode = Integer.parseInt(statusLine.split(" ", 3)[1]);
+
+        long contentLength = -1;
+        boolean chunked = false;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            var header = line.toLowerCase(Locale.ROOT);
+            if (header.startsWith("content-length:")) {
+                contentLength = Long.parseLong(header.substring("content-length:".length()).trim());
+            } else if (header.startsWith("transfer-encoding:") && header.contains("chunked")) {
+                chunked = true;
+            }
+        }
+        return new ResponseHead(statusCode, contentLength, chunked);
+    }
+
+    private DockerResponse readResponse(InputStream in) throws IOException {
+        var head = readHead(in);
+        var body = new ByteArrayOutputStream();
+        if (head.chunked()) {
+            new ChunkedInputStream(in).transferTo(body);
+        } else if (head.contentLength() >= 0) {
+            copy(in, body, head.contentLength());
+        } else {
+            in.transferTo(body);
+        }
+        return new DockerResponse(head.statusCode(), body.toString(StandardCharsets.UTF_8));
+    }
+
+    private void copy(InputStream in, ByteArrayOutputStream out, long length) throws IOException {
+        var chunk = in.readNBytes((int) length);
+        if (chunk.length < length) {
+            throw new IOException("Docker socket closed mid-response");
+        }
+        out.write(chunk);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        var line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int end = line.length();
+                return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.isEmpty() ? null : line.toString();
+    }
+
+    /**
+     * Decodes an HTTP/1.1 chunked body as it arrives, so streamed events can be parsed one by one.
+     */
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remainingInChunk;
+        private boolean finished;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            remainingInChunk--;
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remainingInChunk));
+            if (read == -1) {
+                throw new IOException("Docker socket closed mid-chunk");
+            }
+            remainingInChunk -= read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean nextChunk() throws IOException {
+            if (finished) {
+                return false;
+            }
+            if (remainingInChunk > 0) {
+                return true;
+            }
+            var sizeLine = readLine(in);
+            // The CRLF closing the previous chunk comes before the next size line
+            if (sizeLine != null && sizeLine.isEmpty()) {
+                sizeLine = readLine(in);
+            }
+            if (sizeLine == null) {
+                finished = true;
+                return false;
+            }
+            remainingInChunk = Long.parseLong(sizeLine.split(";", 2)[0].trim(), 16);
+            if (remainingInChunk == 0) {
+                finished = true;
+                return false;
+            }
+            return true;
+        }
+    }
+}
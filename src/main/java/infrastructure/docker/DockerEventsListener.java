@@ -0,0 +1,124 @@
+package infrastructure.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Consumes the Docker Engine {@code /events} stream and applies container start/stop/die
+ * events to the {@link DockerContainerIndex}, which then serves as the replica registry of the
+ * container-runtime mode. While the stream is connected the index stops its periodic listing;
+ * after every (re)connect the index is resynced once to cover the events missed in between.
+ */
+@ApplicationScoped
+public class DockerEventsListener {
+
+    private static final Logger logger = Logger.getLogger(DockerEventsListener.class.getName());
+
+    private static final String EVENTS_FILTER = "{\"type\":[\"container\"],\"event\":[\"start\",\"stop\",\"die\",\"destroy\"]}";
+    private static final long MAX_RECONNECT_BACKOFF_MILLIS = 30_000;
+
+    @ConfigProperty(name = "app.connection-rebalancer.environment.type")
+    String environmentType;
+
+    @ConfigProperty(name = "app.connection-rebalancer.docker.events.enabled", defaultValue = "true")
+    boolean eventsEnabled;
+
+    private final DockerEngineClient dockerEngineClient;
+    private final DockerContainerIndex dockerContainerIndex;
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public DockerEventsListener(DockerEngineClient dockerEngineClient, DockerContainerIndex dockerContainerIndex) {
+        this.dockerEngineClient = dockerEngineClient;
+        this.dockerContainerIndex = dockerContainerIndex;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!eventsEnabled || !"container_runtime".equalsIgnoreCase(sanitizeEnvVariable(environmentType))) {
+            return;
+        }
+        running = true;
+        listenerThread = Thread.ofVirtual().name("docker-events").start(this::listen);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listen() {
+        var path = "/events?filters=" + URLEncoder.encode(EVENTS_FILTER, StandardCharsets.UTF_8);
+        long backoffMillis = 1_000;
+        while (running) {
+            try (var in = dockerEngineClient.stream(path);
+                 var events = dockerEngineClient.objectMapper().readerFor(JsonNode.class).<JsonNode>readValues(in)) {
+                dockerContainerIndex.setLive(true);
+                dockerContainerIndex.resync();
+                backoffMillis = 1_000;
+                logger.info("Listening to docker container events");
+                while (running && events.hasNextValue()) {
+                    apply(events.nextValue());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (running) {
+                    logger.log(Level.WARNING, "Docker events stream failed, reconnecting in " + backoffMillis + "ms: " + e.getMessage());
+                }
+            } finally {
+                dockerContainerIndex.setLive(false);
+            }
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_RECONNECT_BACKOFF_MILLIS);
+        }
+    }
+
+    private void apply(JsonNode event) {
+        var action = event.path("Action").asText(event.path("status").asText());
+        var containerId = event.path("Actor").path("ID").asText(event.path("id").asText());
+        if (containerId.isEmpty()) {
+            return;
+        }
+        switch (action) {
+            case "start" -> inspectInto(containerId);
+            case "stop", "die", "destroy" -> dockerContainerIndex.remove(containerId);
+            default -> {
+            }
+        }
+    }
+
+    private void inspectInto(String containerId) {
+        try {
+            // The start event carries no network settings, one inspect gives the IPs of the new replica
+            var response = dockerEngineClient.get("/containers/" + containerId + "/json");
+            if (response.statusCode() == 200) {
+                dockerContainerIndex.put(DockerContainerIndex.toEntry(dockerEngineClient.readTree(response.body())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error inspecting started container " + containerId + ": " + e.getMessage());
+        }
+    }
+
+    private String sanitizeEnvVariable(String envVariable) {
+        return envVariable.trim().replaceAll("^\"|\"$", "");
+    }
+}
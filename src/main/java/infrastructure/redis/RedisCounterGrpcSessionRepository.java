@@ -0,0 +1,66 @@
+package infrastructure.redis;
+
+import domain.GrpcPersistentSession;
+import domain.ReactiveGrpcSessionRepository;
+import domain.GrpcSessionRepository;
+import io.quarkus.arc.lookup.LookupIfProperty;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * GrpcSessionRepository that answers utilization queries from the {@code SessionCount:grpc} hash
+ * instead of reading every session. Session listing and drop commands are delegated to the
+ * SCAN based repository. Selected with {@code app.connection-rebalancer.redis.session-source=counters}.
+ */
+@ApplicationScoped
+@LookupIfProperty(name = "app.connection-rebalancer.redis.session-source", stringValue = "counters")
+public class RedisCounterGrpcSessionRepository implements GrpcSessionRepository, ReactiveGrpcSessionRepository {
+
+    private final RedisGrpcSessionRepository grpcSessionRepository;
+    private final RedisSessionCounterStore counterStore;
+
+    public RedisCounterGrpcSessionRepository(RedisGrpcSessionRepository grpcSessionRepository, RedisSessionCounterStore counterStore) {
+        this.grpcSessionRepository = grpcSessionRepository;
+        this.counterStore = counterStore;
+    }
+
+    @Override
+    public List<GrpcPersistentSession> findAllSessions() {
+        return grpcSessionRepository.findAllSessions();
+    }
+
+    @Override
+    public void scanSessions(Consumer<List<GrpcPersistentSession>> batchConsumer) {
+        grpcSessionRepository.scanSessions(batchConsumer);
+    }
+
+    @Override
+    public Map<String, Integer> countSessionsPerHost() {
+        return counterStore.read(RedisSessionCounterStore.GRPC_PROTOCOL);
+    }
+
+    @Override
+    public Multi<GrpcPersistentSession> streamSessions() {
+        return grpcSessionRepository.streamSessions();
+    }
+
+    @Override
+    public Uni<Map<String, Integer>> countSessionsPerHostAsync() {
+        return counterStore.readAsync(RedisSessionCounterStore.GRPC_PROTOCOL);
+    }
+
+    @Override
+    public void dropGrpcSessions(Map<String, Integer> numberOfConnectionsToDrop) {
+        grpcSessionRepository.dropGrpcSessions(numberOfConnectionsToDrop);
+    }
+
+    @Override
+    public Map<String, Integer> inFlightDrops() {
+        return grpcSessionRepository.inFlightDrops();
+    }
+}
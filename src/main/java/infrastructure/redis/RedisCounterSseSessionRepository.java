@@ -0,0 +1,66 @@
+package infrastructure.redis;
+
+import domain.SsePersistentSession;
+import domain.ReactiveSseSessionRepository;
+import domain.SseSessionRepository;
+import io.quarkus.arc.lookup.LookupIfProperty;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * SseSessionRepository that answers utilization queries from the {@code SessionCount:sse} hash
+ * instead of reading every session. Session listing and drop commands are delegated to the
+ * SCAN based repository. Selected with {@code app.connection-rebalancer.redis.session-source=counters}.
+ */
+@ApplicationScoped
+@LookupIfProperty(name = "app.connection-rebalancer.redis.session-source", stringValue = "counters")
+public class RedisCounterSseSessionRepository implements SseSessionRepository, ReactiveSseSessionRepository {
+
+    private final RedisSseSessionRepository sseSessionRepository;
+    private final RedisSessionCounterStore counterStore;
+
+    public RedisCounterSseSessionRepository(RedisSseSessionRepository sseSessionRepository, RedisSessionCounterStore counterStore) {
+        this.sseSessionRepository = sseSessionRepository;
+        this.counterStore = counterStore;
+    }
+
+    @Override
+    public List<SsePersistentSession> findAllSessions() {
+        return sseSessionRepository.findAllSessions();
+    }
+
+    @Override
+    public void scanSessions(Consumer<List<SsePersistentSession>> batchConsumer) {
+        sseSessionRepository.scanSessions(batchConsumer);
+    }
+
+    @Override
+    public Map<String, Integer> countSessionsPerHost() {
+        return counterStore.read(RedisSessionCounterStore.SSE_PROTOCOL);
+    }
+
+    @Override
+    public Multi<SsePersistentSession> streamSessions() {
+        return sseSessionRepository.streamSessions();
+    }
+
+    @Override
+    public Uni<Map<String, Integer>> countSessionsPerHostAsync() {
+        return counterStore.readAsync(RedisSessionCounterStore.SSE_PROTOCOL);
+    }
+
+    @Override
+    public void dropSseSessions(Map<String, Integer> numberOfConnectionsToDrop) {
+        sseSessionRepository.dropSseSessions(numberOfConnectionsToDrop);
+    }
+
+    @Override
+    public Map<String, Integer> inFlightDrops() {
+        return sseSessionRepository.inFlightDrops();
+    }
+}
@@ -0,0 +1,66 @@
+package infrastructure.redis;
+
+import domain.PersistentSession;
+import domain.ReactiveWsSessionRepository;
+import domain.WsSessionRepository;
+import io.quarkus.arc.lookup.LookupIfProperty;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * WsSessionRepository that answers utilization queries from the {@code SessionCount:ws} hash
+ * instead of reading every session. Session listing and drop commands are delegated to the
+ * SCAN based repository. Selected with {@code app.connection-rebalancer.redis.session-source=counters}.
+ */
+@ApplicationScoped
+@LookupIfProperty(name = "app.connection-rebalancer.redis.session-source", stringValue = "counters")
+public class RedisCounterWsSessionRepository implements WsSessionRepository, ReactiveWsSessionRepository {
+
+    private final RedisWsSessionRepository wsSessionRepository;
+    private final RedisSessionCounterStore counterStore;
+
+    public RedisCounterWsSessionRepository(RedisWsSessionRepository wsSessionRepository, RedisSessionCounterStore counterStore) {
+        this.wsSessionRepository = wsSessionRepository;
+        this.counterStore = counterStore;
+    }
+
+    @Override
+    public List<PersistentSession> findAllSessions() {
+        return wsSessionRepository.findAllSessions();
+    }
+
+    @Override
+    public void scanSessions(Consumer<List<PersistentSession>> batchConsumer) {
+        wsSessionRepository.scanSessions(batchConsumer);
+    }
+
+    @Override
+    public Map<String, Integer> countSessionsPerHost() {
+        return counterStore.read(RedisSessionCounterStore.WS_PROTOCOL);
+    }
+
+    @Override
+    public Multi<PersistentSession> streamSessions() {
+        return wsSessionRepository.streamSessions();
+    }
+
+    @Override
+    public Uni<Map<String, Integer>> countSessionsPerHostAsync() {
+        return counterStore.readAsync(RedisSessionCounterStore.WS_PROTOCOL);
+    }
+
+    @Override
+    public void dropWsSessions(Map<String, Integer> numberOfConnectionsToDrop) {
+        wsSessionRepository.dropWsSessions(numberOfConnectionsToDrop);
+    }
+
+    @Override
+    public Map<String, Integer> inFlightDrops() {
+        return wsSessionRepository.inFlightDrops();
+    }
+}
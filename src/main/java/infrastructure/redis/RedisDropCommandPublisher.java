@@ -0,0 +1,132 @@
+package infrastructure.redis;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Publishes the drop plan of one rebalance pass as a single message per protocol. Every
+ * message carries a sequence number under {@link #SEQUENCE_KEY}, taken from a Redis counter
+ * per channel so it keeps increasing across restarts and replicas of the rebalancer. Session
+ * servers remember the highest sequence they applied and discard any older plan. With leader
+ * election enabled the sequence is only issued while this replica holds the lease, and the
+ * message also carries the lease's fencing token under {@link #FENCE_KEY}, so session servers
+ * can discard plans from a replica whose token is lower than one they already saw.
+ * <p>
+ * With {@code app.connection-rebalancer.redis.drop-channel-mode} set to {@code per-host} or
+ * {@code sharded}, the plan is split into one message per targeted host on
+ * {@code <channel>:<hostId>} (PUBLISH or Redis 7 SPUBLISH), so only the affected hosts wake
+ * up. Every split message carries the sequence of the plan it belongs to. In {@code streams}
+ * mode the per-host messages go through {@link RedisDropStreamTransport} instead, which also
+ * reports the drops that are still in flight.
+ */
+@ApplicationScoped
+public class RedisDropCommandPublisher {
+
+    private static final Logger logger = Logger.getLogger(RedisDropCommandPublisher.class.getName());
+
+    /**
+     * Reserved key of the drop message holding the plan sequence number, never a hostId.
+     */
+    public static final String SEQUENCE_KEY = "__seq";
+
+    /**
+     * Reserved key of the drop message holding the fencing token of the publishing leader, never a hostId.
+     */
+    public static final String FENCE_KEY = "__fence";
+
+    // Long values, the sequence and fence counters are 64-bit
+    private static final TypeReference<Map<String, Long>> dsPubSubValueType = new TypeReference<>() {};
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.drop-channel-mode", defaultValue = "shared")
+    String dropChannelMode;
+
+    private final RedisDataSource ds;
+    private final PubSubCommands<Map<String, Long>> pubSubCommand;
+    private final ObjectMapper objectMapper;
+    private final RedisDropStreamTransport streamTransport;
+    private final RedisLeaderElection leaderElection;
+
+    public RedisDropCommandPublisher(RedisDataSource ds, ObjectMapper objectMapper, RedisDropStreamTransport streamTransport,
+            RedisLeaderElection leaderElection) {
+        this.ds = ds;
+        this.pubSubCommand = ds.pubsub(dsPubSubValueType);
+        this.objectMapper = objectMapper;
+        this.streamTransport = streamTransport;
+        this.leaderElection = leaderElection;
+    }
+
+    /**
+     * Publishes one consolidated drop command.
+     * @param channel The drop channel of the protocol
+     * @param numberOfConnectionsToDrop Map of hostId to the number of sessions it should drop
+     * @return The sequence number of the published plan
+     * @throws IllegalStateException When leader election is enabled and this replica is not the leader
+     */
+    public long publish(String channel, Map<String, Integer> numberOfConnectionsToDrop) {
+        var sequence = leaderElection.fencedIncrement("drop-sequence:" + channel);
+        var fence = leaderElection.fencingToken();
+        logger.log(Level.INFO, "Publishing " + channel + " command #" + sequence + " with data: " + numberOfConnectionsToDrop);
+        switch (channelMode()) {
+            case "per-host" -> numberOfConnectionsToDrop.forEach((hostId, sessions) ->
+                    pubSubCommand.publish(hostChannel(channel, hostId), message(Map.of(hostId, sessions), sequence, fence)));
+            case "sharded" -> numberOfConnectionsToDrop.forEach((hostId, sessions) ->
+                    ds.execute("SPUBLISH", hostChannel(channel, hostId), toJson(message(Map.of(hostId, sessions), sequence, fence))));
+            case "streams" -> streamTransport.send(channel, numberOfConnectionsToDrop, sequence, fence);
+            default -> pubSubCommand.publish(channel, message(numberOfConnectionsToDrop, sequence, fence));
+        }
+        return sequence;
+    }
+
+    /**
+     * @return Map of hostId to the sessions requested on the channel and not yet acknowledged, empty unless
+     * drop commands are delivered over streams
+     */
+    public Map<String, Integer> inFlightDrops(String channel) {
+        return "streams".equals(channelMode()) ? streamTransport.inFlightDrops(channel) : Map.of();
+    }
+
+    /**
+     * @return The channel a single host listens on in the per-host and sharded modes
+     */
+    public static String hostChannel(String channel, String hostId) {
+        return channel + ":" + hostId;
+    }
+
+    private Map<String, Long> message(Map<String, Integer> numberOfConnectionsToDrop, long sequence, long fence) {
+        Map<String, Long> message = new LinkedHashMap<>();
+        numberOfConnectionsToDrop.forEach((hostId, sessions) -> message.put(hostId, sessions.longValue()));
+        message.put(SEQUENCE_KEY, sequence);
+        if (fence > 0) {
+            message.put(FENCE_KEY, fence);
+        }
+        return message;
+    }
+
+    private String toJson(Map<String, Long> message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String channelMode() {
+        return sanitizeEnvVariable(dropChannelMode).toLowerCase();
+    }
+
+    private String sanitizeEnvVariable(String envVariable) {
+        return envVariable.trim().replaceAll("^\"|\"$", "");
+    }
+}
@@ -0,0 +1,176 @@
+package infrastructure.redis;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Paces drop plans so the sessions of one pass do not all reconnect at once. With
+ * {@code app.connection-rebalancer.shedding.enabled=true} a plan is queued as a quota per host
+ * instead of being published, and every {@code shedding.tick} a small batch is published through
+ * {@link RedisDropCommandPublisher}. Each host has a token bucket refilled at its quota spread over
+ * {@code shedding.window}, and a cluster-wide bucket caps all hosts and protocols together at
+ * {@code shedding.max-sessions-per-second}. Hosts that got sessions in a tick move to the back of
+ * the queue (and so do their protocols), so a tight cluster ceiling is shared instead of draining
+ * the first host first.
+ */
+@ApplicationScoped
+public class RedisDropShedder {
+
+    private static final Logger logger = Logger.getLogger(RedisDropShedder.class.getName());
+
+    @ConfigProperty(name = "app.connection-rebalancer.shedding.enabled", defaultValue = "false")
+    boolean sheddingEnabled;
+
+    @ConfigProperty(name = "app.connection-rebalancer.shedding.window", defaultValue = "30s")
+    Duration window;
+
+    @ConfigProperty(name = "app.connection-rebalancer.shedding.max-sessions-per-second", defaultValue = "200")
+    int maxSessionsPerSecond;
+
+    @ConfigProperty(name = "app.connection-rebalancer.shedding.tick", defaultValue = "1s")
+    Duration tick;
+
+    private static final class HostQuota {
+        int remaining;
+        double sessionsPerSecond;
+        double tokens;
+    }
+
+    private final RedisDropCommandPublisher dropCommandPublisher;
+    private final RedisLeaderElection leaderElection;
+    private final Map<String, Map<String, HostQuota>> quotasByChannel = new LinkedHashMap<>();
+    private ScheduledExecutorService executor;
+    private double clusterTokens;
+    private long lastRefillNanos;
+
+    public RedisDropShedder(RedisDropCommandPublisher dropCommandPublisher, RedisLeaderElection leaderElection) {
+        this.dropCommandPublisher = dropCommandPublisher;
+        this.leaderElection = leaderElection;
+    }
+
+    /**
+     * Publishes a drop plan, right away or paced over the shedding window.
+     * @param channel The drop channel of the protocol
+     * @param numberOfConnectionsToDrop Map of hostId to the number of sessions it should drop
+     */
+    public void shed(String channel, Map<String, Integer> numberOfConnectionsToDrop) {
+        if (!sheddingEnabled) {
+            dropCommandPublisher.publish(channel, numberOfConnectionsToDrop);
+            return;
+        }
+        enqueue(channel, numberOfConnectionsToDrop);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!sheddingEnabled) {
+            return;
+        }
+        lastRefillNanos = System.nanoTime();
+        executor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("drop-shedder").factory());
+        executor.scheduleWithFixedDelay(this::publishBatches, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private synchronized void enqueue(String channel, Map<String, Integer> numberOfConnectionsToDrop) {
+        var quotas = quotasByChannel.computeIfAbsent(channel, c -> new LinkedHashMap<>());
+        var windowSeconds = Math.max(tick.toMillis(), window.toMillis()) / 1000.0;
+        numberOfConnectionsToDrop.forEach((hostId, sessions) -> {
+            var quota = quotas.computeIfAbsent(hostId, h -> new HostQuota());
+            quota.remaining += sessions;
+            // The whole remaining quota, old and new, is spread over a fresh window
+            quota.sessionsPerSecond = quota.remaining / windowSeconds;
+        });
+        logger.info("Queued " + channel + " drops " + numberOfConnectionsToDrop + " to shed over " + window);
+    }
+
+    private void publishBatches() {
+        if (!leaderElection.isLeader()) {
+            discardQueue();
+            return;
+        }
+        try {
+            takeBatches().forEach((channel, batch) -> {
+                if (!batch.isEmpty()) {
+                    dropCommandPublisher.publish(channel, batch);
+                }
+            });
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error publishing paced drop batch: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Drops the quotas queued while this replica was leader, the new leader plans from the current sessions.
+     */
+    private synchronized void discardQueue() {
+        if (!quotasByChannel.isEmpty()) {
+            logger.warning("No longer the rebalancer leader, discarding queued drops " + quotasByChannel.keySet());
+            quotasByChannel.clear();
+        }
+    }
+
+    private synchronized Map<String, Map<String, Integer>> takeBatches() {
+        var now = System.nanoTime();
+        var elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+        var tickSeconds = tick.toMillis() / 1000.0;
+        lastRefillNanos = now;
+        if (maxSessionsPerSecond > 0) {
+            // Holds one tick worth of sessions like the host buckets, so ticks longer than a second still get the full rate
+            var clusterCapacity = Math.max(1.0, maxSessionsPerSecond * tickSeconds);
+            clusterTokens = Math.min(clusterCapacity, clusterTokens + maxSessionsPerSecond * elapsedSeconds);
+        }
+
+        Map<String, Map<String, Integer>> batches = new LinkedHashMap<>();
+        quotasByChannel.forEach((channel, quotas) -> {
+            Map<String, Integer> batch = new LinkedHashMap<>();
+            for (var entry : quotas.entrySet()) {
+                var quota = entry.getValue();
+                // A bucket holds one tick worth of sessions, or one session for hosts with a slow rate
+                var capacity = Math.max(1.0, quota.sessionsPerSecond * tickSeconds);
+                quota.tokens = Math.min(capacity, quota.tokens + quota.sessionsPerSecond * elapsedSeconds);
+                var allowance = Math.min(quota.remaining, (int) quota.tokens);
+                if (maxSessionsPerSecond > 0) {
+                    allowance = Math.min(allowance, (int) clusterTokens);
+                    clusterTokens -= allowance;
+                }
+                if (allowance > 0) {
+                    quota.remaining -= allowance;
+                    quota.tokens -= allowance;
+                    batch.put(entry.getKey(), allowance);
+                }
+            }
+            batch.keySet().forEach(hostId -> {
+                var quota = quotas.remove(hostId);
+                if (quota.remaining > 0) {
+                    quotas.put(hostId, quota);
+                }
+            });
+            batches.put(channel, batch);
+        });
+        batches.forEach((channel, batch) -> {
+            if (!batch.isEmpty()) {
+                quotasByChannel.put(channel, quotasByChannel.remove(channel));
+            }
+        });
+        quotasByChannel.values().removeIf(Map::isEmpty);
+        return batches;
+    }
+}
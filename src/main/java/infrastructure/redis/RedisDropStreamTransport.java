@@ -0,0 +1,177 @@
+package infrastructure.redis;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.keys.KeyCommands;
+import io.quarkus.redis.datasource.stream.StreamCommands;
+import io.quarkus.redis.datasource.stream.StreamRange;
+import io.quarkus.redis.datasource.stream.XAddArgs;
+import io.quarkus.redis.datasource.stream.XGroupCreateArgs;
+import io.quarkus.redis.datasource.stream.XReadArgs;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Delivers drop commands over Redis Streams instead of Pub/Sub, so a session server that is
+ * paused or reconnecting picks the command up later instead of missing it.
+ * <p>
+ * Each host reads its own stream {@code <channel>:<hostId>} (fields {@code seq}, {@code sessions},
+ * plus {@code fence} with leader election enabled)
+ * through the consumer group {@code drop-stream-group}, XACKs the entry once it has shed the
+ * sessions and reports the outcome by XADDing {@code host}, {@code seq} and {@code dropped} to
+ * {@code <channel>:acks}. Deliveries stay in flight until their acknowledgement is read back or
+ * {@code drop-ack-timeout} elapses, whichever comes first.
+ * <p>
+ * Every XADD renews a {@code drop-stream-ttl} expiry on the host stream, so the stream and its
+ * group of a host that left the cluster are removed by Redis instead of accumulating. The group
+ * is created again when a stream was last written more than half a TTL ago.
+ */
+@ApplicationScoped
+public class RedisDropStreamTransport {
+
+    private static final Logger logger = Logger.getLogger(RedisDropStreamTransport.class.getName());
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.drop-stream-group", defaultValue = "session-servers")
+    String consumerGroup;
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.drop-stream-max-length", defaultValue = "1000")
+    long maxLength;
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.drop-ack-timeout", defaultValue = "2m")
+    Duration ackTimeout;
+
+    // Must stay above drop-ack-timeout, an expired stream takes its unread entries with it
+    @ConfigProperty(name = "app.connection-rebalancer.redis.drop-stream-ttl", defaultValue = "10m")
+    Duration streamTtl;
+
+    private record Delivery(String hostId, long sequence, int requested, long deliveredAtNanos) {
+    }
+
+    private final StreamCommands<String, String, String> streamCommands;
+    private final KeyCommands<String> keyCommands;
+    // Host stream to the time it was last written
+    private final Map<String, Long> knownStreams = new HashMap<>();
+    private final Map<String, List<Delivery>> deliveriesByChannel = new HashMap<>();
+    private final Map<String, String> lastAckIds = new HashMap<>();
+
+    public RedisDropStreamTransport(RedisDataSource ds) {
+        this.streamCommands = ds.stream(String.class, String.class, String.class);
+        this.keyCommands = ds.key();
+    }
+
+    /**
+     * Appends one drop entry per host to the host streams.
+     * @param channel The drop channel of the protocol
+     * @param numberOfConnectionsToDrop Map of hostId to the number of sessions it should drop
+     * @param sequence The sequence number of the plan
+     * @param fence The fencing token of the publishing leader, 0 without leader election
+     */
+    public synchronized void send(String channel, Map<String, Integer> numberOfConnectionsToDrop, long sequence, long fence) {
+        // Start reading acks from the current tail before the first delivery, so older acks are skipped
+        lastAckIds.computeIfAbsent(channel, this::lastEntryId);
+        var deliveries = deliveriesByChannel.computeIfAbsent(channel, c -> new ArrayList<>());
+        var now = System.nanoTime();
+        knownStreams.values().removeIf(lastWrittenNanos -> now - lastWrittenNanos > streamTtl.toNanos());
+        numberOfConnectionsToDrop.forEach((hostId, sessions) -> {
+            var stream = RedisDropCommandPublisher.hostChannel(channel, hostId);
+            ensureConsumerGroup(stream, now);
+            Map<String, String> entry = new HashMap<>(Map.of("seq", String.valueOf(sequence), "sessions", String.valueOf(sessions)));
+            if (fence > 0) {
+                entry.put("fence", String.valueOf(fence));
+            }
+            streamCommands.xadd(stream, new XAddArgs().maxlen(maxLength).nearlyExactTrimming(), entry);
+            keyCommands.pexpire(stream, streamTtl);
+            knownStreams.put(stream, now);
+            deliveries.add(new Delivery(hostId, sequence, sessions, System.nanoTime()));
+        });
+    }
+
+    /**
+     * Applies the acknowledgements received since the last call and returns what is still outstanding.
+     * @param channel The drop channel of the protocol
+     * @return Map of hostId to the number of sessions requested but not yet acknowledged
+     */
+    public synchronized Map<String, Integer> inFlightDrops(String channel) {
+        var deliveries = deliveriesByChannel.get(channel);
+        if (deliveries == null || deliveries.isEmpty()) {
+            return Map.of();
+        }
+        readAcks(channel, deliveries);
+
+        var now = System.nanoTime();
+        deliveries.removeIf(delivery -> {
+            boolean expired = now - delivery.deliveredAtNanos() > ackTimeout.toNanos();
+            if (expired) {
+                logger.warning("No acknowledgement for " + channel + " command #" + delivery.sequence() + " from host "
+                        + delivery.hostId() + " after " + ackTimeout + ", no longer counted as in flight");
+            }
+            return expired;
+        });
+
+        Map<String, Integer> inFlight = new HashMap<>();
+        deliveries.forEach(delivery -> inFlight.merge(delivery.hostId(), delivery.requested(), Integer::sum));
+        return inFlight;
+    }
+
+    private void readAcks(String channel, List<Delivery> deliveries) {
+        var ackStream = channel + ":acks";
+        try {
+            var acks = streamCommands.xread(ackStream, lastAckIds.get(channel), new XReadArgs().count(1000));
+            for (var ack : acks) {
+                lastAckIds.put(channel, ack.id());
+                var hostId = ack.payload().get("host");
+                var sequence = parseLong(ack.payload().get("seq"));
+                var dropped = (int) parseLong(ack.payload().get("dropped"));
+                deliveries.removeIf(delivery -> {
+                    if (!delivery.hostId().equals(hostId) || delivery.sequence() != sequence) {
+                        return false;
+                    }
+                    if (dropped < delivery.requested()) {
+                        logger.info("Host " + hostId + " dropped " + dropped + " of " + delivery.requested()
+                                + " sessions requested by " + channel + " command #" + sequence);
+                    }
+                    return true;
+                });
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error reading " + ackStream + ": " + e.getMessage());
+        }
+    }
+
+    private void ensureConsumerGroup(String stream, long now) {
+        // Past half a TTL the stream may expire before the next XADD renews it, taking the group along
+        var lastWrittenNanos = knownStreams.get(stream);
+        if (lastWrittenNanos != null && now - lastWrittenNanos < streamTtl.toNanos() / 2) {
+            return;
+        }
+        try {
+            // Group positioned at the start so entries added before the host first reads are still delivered
+            streamCommands.xgroupCreate(stream, consumerGroup, "0", new XGroupCreateArgs().mkstream());
+        } catch (Exception e) {
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    private String lastEntryId(String channel) {
+        var last = streamCommands.xrevrange(channel + ":acks", StreamRange.of("+", "-"), 1);
+        return last.isEmpty() ? "0-0" : last.get(0).id();
+    }
+
+    private long parseLong(String value) {
+        try {
+            return value == null ? -1 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
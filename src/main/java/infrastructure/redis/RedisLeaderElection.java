@@ -0,0 +1,200 @@
+package infrastructure.redis;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Elects one active rebalancer among its replicas with a Redis lease. The lease key holds
+ * {@code <instanceId>:<fencingToken>} with a TTL of {@code leader-election.lease}; it is taken
+ * only when absent, and the fencing token is incremented in the same script, so every new
+ * leader gets a higher token than all previous ones. The leader renews the lease every
+ * {@code leader-election.renew-interval}, standbys try to take it at the same pace, so a failed
+ * leader is replaced within one lease period and the election costs one script call per
+ * replica and interval.
+ * <p>
+ * A replica considers itself leader only until the lease it last acquired or renewed would
+ * expire, counted from before the call was sent. Drop sequences are issued through
+ * {@link #fencedIncrement(String)}, which refuses to increment unless Redis still holds this
+ * replica's lease, and drop messages carry the fencing token, so a paused former leader can
+ * neither publish a new plan nor get one accepted by session servers that saw a higher token.
+ * Standbys keep their watches and caches running, only the jobs that act on the cluster are
+ * skipped. With {@code leader-election.enabled=false} every replica is leader with token 0.
+ */
+@ApplicationScoped
+public class RedisLeaderElection {
+
+    private static final Logger logger = Logger.getLogger(RedisLeaderElection.class.getName());
+
+    private static final String ACQUIRE_SCRIPT = """
+            if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end
+            local token = redis.call('INCR', KEYS[2])
+            redis.call('SET', KEYS[1], ARGV[1] .. ':' .. token, 'PX', ARGV[2])
+            return token""";
+
+    private static final String RENEW_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end
+            return 0""";
+
+    private static final String RELEASE_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end
+            return 0""";
+
+    private static final String FENCED_INCREMENT_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('INCR', KEYS[2]) end
+            return -1""";
+
+    public record Leadership(String instanceId, boolean leader, long fencingToken, Instant leaseExpiresAt) {
+    }
+
+    @ConfigProperty(name = "app.connection-rebalancer.leader-election.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.connection-rebalancer.leader-election.key", defaultValue = "connection-rebalancer:leader")
+    String leaseKey;
+
+    @ConfigProperty(name = "app.connection-rebalancer.leader-election.lease", defaultValue = "15s")
+    Duration lease;
+
+    @ConfigProperty(name = "app.connection-rebalancer.leader-election.renew-interval", defaultValue = "5s")
+    Duration renewInterval;
+
+    @ConfigProperty(name = "app.connection-rebalancer.leader-election.instance-id")
+    Optional<String> configuredInstanceId;
+
+    private final RedisDataSource ds;
+    private ScheduledExecutorService executor;
+    private String instanceId;
+    private volatile long fencingToken;
+    private volatile long leaseValidUntilNanos;
+    private volatile Instant leaseExpiresAt;
+
+    public RedisLeaderElection(RedisDataSource ds) {
+        this.ds = ds;
+    }
+
+    /**
+     * @return Whether this replica holds a lease that has not expired yet, always true when the election is disabled
+     */
+    public boolean isLeader() {
+        return !enabled || (fencingToken > 0 && System.nanoTime() < leaseValidUntilNanos);
+    }
+
+    /**
+     * @return The fencing token of the lease held by this replica, 0 when the election is disabled
+     */
+    public long fencingToken() {
+        return enabled ? fencingToken : 0;
+    }
+
+    public Leadership status() {
+        return new Leadership(instanceId(), isLeader(), fencingToken(), isLeader() ? leaseExpiresAt : null);
+    }
+
+    /**
+     * Increments a counter only while Redis still holds this replica's lease.
+     * @param key The counter to increment
+     * @return The incremented value
+     * @throws IllegalStateException When this replica is no longer the leader
+     */
+    public long fencedIncrement(String key) {
+        if (!enabled) {
+            return ds.value(Long.class).incr(key);
+        }
+        var value = fencingToken > 0
+                ? ds.execute("EVAL", FENCED_INCREMENT_SCRIPT, "2", sanitizeEnvVariable(leaseKey), key, leaseValue()).toLong()
+                : -1;
+        if (value < 0) {
+            throw new IllegalStateException("Replica " + instanceId() + " does not hold the rebalancer lease, not incrementing " + key);
+        }
+        return value;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        logger.info("Leader election enabled for replica " + instanceId() + " on " + sanitizeEnvVariable(leaseKey));
+        executor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("leader-election").factory());
+        executor.scheduleWithFixedDelay(this::renewOrAcquire, 0, renewInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        if (fencingToken > 0) {
+            try {
+                // Hand over right away instead of letting the standbys wait for the lease to expire
+                ds.execute("EVAL", RELEASE_SCRIPT, "1", sanitizeEnvVariable(leaseKey), leaseValue());
+                logger.info("Released the rebalancer lease #" + fencingToken);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error releasing the rebalancer lease: " + e.getMessage());
+            }
+        }
+    }
+
+    private void renewOrAcquire() {
+        var key = sanitizeEnvVariable(leaseKey);
+        var leaseMillis = String.valueOf(lease.toMillis());
+        var sentAt = System.nanoTime();
+        try {
+            if (fencingToken > 0) {
+                if (ds.execute("EVAL", RENEW_SCRIPT, "1", key, leaseValue(), leaseMillis).toLong() == 1) {
+                    extendLease(sentAt);
+                    return;
+                }
+                logger.warning("Replica " + instanceId() + " lost the rebalancer lease #" + fencingToken);
+                fencingToken = 0;
+            }
+            var token = ds.execute("EVAL", ACQUIRE_SCRIPT, "2", key, key + ":fencing", instanceId(), leaseMillis).toLong();
+            if (token > 0) {
+                fencingToken = token;
+                extendLease(sentAt);
+                logger.info("Replica " + instanceId() + " acquired the rebalancer lease #" + token);
+            }
+        } catch (Exception e) {
+            // The local lease runs out on its own, so an unreachable Redis demotes the leader after one lease period
+            logger.log(Level.WARNING, "Error renewing the rebalancer lease: " + e.getMessage());
+        }
+    }
+
+    private void extendLease(long sentAtNanos) {
+        leaseValidUntilNanos = sentAtNanos + lease.toNanos();
+        leaseExpiresAt = Instant.now().plus(lease);
+    }
+
+    private String leaseValue() {
+        return instanceId() + ":" + fencingToken;
+    }
+
+    /**
+     * @return Id of this replica, {@code leader-election.instance-id} or a random id when unset
+     */
+    public synchronized String instanceId() {
+        if (instanceId == null) {
+            instanceId = configuredInstanceId.map(this::sanitizeEnvVariable).filter(id -> !id.isEmpty())
+                    .orElseGet(() -> UUID.randomUUID().toString());
+        }
+        return instanceId;
+    }
+
+    private String sanitizeEnvVariable(String envVariable) {
+        return envVariable.trim().replaceAll("^\"|\"$", "");
+    }
+}
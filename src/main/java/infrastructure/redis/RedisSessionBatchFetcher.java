@@ -0,0 +1,126 @@
+package infrastructure.redis;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.redis.datasource.value.ReactiveValueCommands;
+import io.smallrye.mutiny.Multi;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Fetches session values in MGET chunks instead of one GET per key. Up to
+ * {@code fetch-in-flight} chunks are kept outstanding on the connection at once, so a
+ * snapshot costs roughly {@code keys / (batchSize * inFlight)} round trips. The blocking
+ * variants give up after {@code fetch-timeout} so an unresponsive Redis cannot hold a tick forever.
+ * <p>
+ * Values are read as raw strings and decoded one by one, so a malformed session value is skipped
+ * on its own. Redis errors and timeouts are not swallowed, they fail the read as a whole: a
+ * partial read would undercount hosts and drive scale-in and drop plans from wrong numbers.
+ */
+@ApplicationScoped
+public class RedisSessionBatchFetcher {
+
+    private static final Logger logger = Logger.getLogger(RedisSessionBatchFetcher.class.getName());
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.fetch-batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.fetch-in-flight", defaultValue = "4")
+    int inFlight;
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.fetch-timeout", defaultValue = "10s")
+    Duration fetchTimeout;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    /**
+     * Reads and decodes the values stored under the given keys.
+     * @param valueCommands The reactive value commands reading the raw values
+     * @param keys The keys to read
+     * @param valueType The session record the values are decoded to
+     * @return The values found, keys that no longer exist and values that cannot be decoded are skipped
+     * @throws io.smallrye.mutiny.TimeoutException When the values are not read within {@code fetch-timeout}
+     */
+    public <V> List<V> fetch(ReactiveValueCommands<String, String> valueCommands, List<String> keys, TypeReference<V> valueType) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+
+        return stream(valueCommands, keys, valueType)
+                .collect().asList()
+                .await().atMost(fetchTimeout);
+    }
+
+    /**
+     * Reads the values stored under the given keys, keeping the key of each value.
+     * @param valueCommands The reactive value commands typed for the session record
+     * @param keys The keys to read
+     * @return Map of key to value, keys that no longer exist are skipped
+     * @throws io.smallrye.mutiny.TimeoutException When the values are not read within {@code fetch-timeout}
+     */
+    public <V> Map<String, V> fetchEntries(ReactiveValueCommands<String, V> valueCommands, List<String> keys) {
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<String, V> entries = HashMap.newHashMap(keys.size());
+        Multi.createFrom().iterable(chunksOf(keys))
+                .onItem().transformToUni(chunk -> valueCommands.mget(chunk.toArray(String[]::new)))
+                .merge(Math.max(1, inFlight))
+                .onItem().invoke(values -> values.forEach((key, value) -> {
+                    if (value != null) {
+                        entries.put(key, value);
+                    }
+                }))
+                .collect().last()
+                .await().atMost(fetchTimeout);
+        return entries;
+    }
+
+    /**
+     * Non-blocking variant of {@link #fetch(ReactiveValueCommands, List, TypeReference)}.
+     * @return The values found, keys that no longer exist and values that cannot be decoded are skipped
+     */
+    public <V> Multi<V> stream(ReactiveValueCommands<String, String> valueCommands, List<String> keys, TypeReference<V> valueType) {
+        return Multi.createFrom().iterable(chunksOf(keys))
+                .onItem().transformToUni(chunk -> valueCommands.mget(chunk.toArray(String[]::new)))
+                .merge(Math.max(1, inFlight))
+                .onItem().transformToIterable(values -> decode(values, valueType));
+    }
+
+    private <V> List<V> decode(Map<String, String> values, TypeReference<V> valueType) {
+        List<V> decoded = new ArrayList<>(values.size());
+        values.forEach((key, value) -> {
+            if (value == null) {
+                return;
+            }
+            try {
+                decoded.add(objectMapper.readValue(value, valueType));
+            } catch (JsonProcessingException e) {
+                logger.log(Level.WARNING, "Skipping session " + key + ", its value is not valid JSON: " + e.getOriginalMessage());
+            }
+        });
+        return decoded;
+    }
+
+    private List<List<String>> chunksOf(List<String> keys) {
+        var size = Math.max(1, batchSize);
+        List<List<String>> chunks = new ArrayList<>((keys.size() + size - 1) / size);
+        for (int from = 0; from < keys.size(); from += size) {
+            chunks.add(keys.subList(from, Math.min(from + size, keys.size())));
+        }
+        return chunks;
+    }
+}
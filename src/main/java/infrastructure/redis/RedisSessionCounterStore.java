@@ -0,0 +1,136 @@
+package infrastructure.redis;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.hash.HashCommands;
+import io.quarkus.redis.datasource.hash.ReactiveHashCommands;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Per-host session counters kept in one Redis hash per protocol ({@code SessionCount:ws},
+ * {@code SessionCount:sse}, {@code SessionCount:grpc}). Tracker nodes HINCRBY their host field
+ * whenever they store or remove a session key, so reading the utilization of the whole
+ * cluster is a single HGETALL.
+ */
+@ApplicationScoped
+public class RedisSessionCounterStore {
+
+    public static final String WS_PROTOCOL = "ws";
+    public static final String SSE_PROTOCOL = "sse";
+    public static final String GRPC_PROTOCOL = "grpc";
+
+    private static final String COUNTER_KEY_PREFIX = "SessionCount:";
+
+    private static final int RECONCILE_FIELDS_PER_CALL = 500;
+
+    // ARGV holds (field, count read, actual count) triples
+    private static final String RECONCILE_SCRIPT = """
+            local repaired = 0
+            for i = 1, #ARGV, 3 do
+              local current = tonumber(redis.call('HGET', KEYS[1], ARGV[i]) or '0')
+              if current == tonumber(ARGV[i + 1]) then
+                local value = redis.call('HINCRBY', KEYS[1], ARGV[i], tonumber(ARGV[i + 2]) - current)
+                if value == 0 then redis.call('HDEL', KEYS[1], ARGV[i]) end
+                repaired = repaired + 1
+              end
+            end
+            return repaired""";
+
+    private final RedisDataSource ds;
+    private final HashCommands<String, String, Integer> hashCommands;
+    private final ReactiveHashCommands<String, String, Integer> reactiveHashCommands;
+
+    public RedisSessionCounterStore(RedisDataSource ds, ReactiveRedisDataSource reactiveDS) {
+        this.ds = ds;
+        this.hashCommands = ds.hash(Integer.class);
+        this.reactiveHashCommands = reactiveDS.hash(Integer.class);
+    }
+
+    public static String counterKey(String protocol) {
+        return COUNTER_KEY_PREFIX + protocol;
+    }
+
+    /**
+     * Reads the session count of every host for a protocol.
+     * @param protocol One of {@link #WS_PROTOCOL}, {@link #SSE_PROTOCOL} or {@link #GRPC_PROTOCOL}
+     * @return Map of hostId to session count, hosts without sessions are omitted
+     */
+    public Map<String, Integer> read(String protocol) {
+        return withoutEmptyHosts(hashCommands.hgetall(counterKey(protocol)));
+    }
+
+    /**
+     * Non-blocking variant of {@link #read(String)}.
+     */
+    public Uni<Map<String, Integer>> readAsync(String protocol) {
+        return reactiveHashCommands.hgetall(counterKey(protocol)).map(RedisSessionCounterStore::withoutEmptyHosts);
+    }
+
+    public long increment(String protocol, String hostId, long delta) {
+        return hashCommands.hincrby(counterKey(protocol), hostId, delta);
+    }
+
+    /**
+     * Repairs the counters that drifted away from the counts observed in the session keys.
+     * The counters are read before the session keys are counted, and every correction is applied
+     * as a delta by a script that first checks the field still holds the value read then. Fields
+     * that tracker nodes changed in the meantime are skipped until the next run, so no concurrent
+     * HINCRBY is lost, and a field is only removed once the correction brought it down to 0.
+     * @param protocol The protocol whose counters are repaired
+     * @param actualSessionsPerHost Counts the session keys, e.g. with a SCAN. Must throw when the count did
+     * not complete: every host missing from a partial count would be zeroed and removed
+     * @return The number of host fields that were corrected or removed
+     * @throws IllegalStateException When the session keys could not be counted, no counter is changed then
+     */
+    public int reconcile(String protocol, Supplier<Map<String, Integer>> actualSessionsPerHost) {
+        var key = counterKey(protocol);
+        var storedSessionsPerHost = hashCommands.hgetall(key);
+        Map<String, Integer> actualCounts;
+        try {
+            actualCounts = actualSessionsPerHost.get();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("The " + protocol + " session keys could not be fully counted, no counter was changed: "
+                    + e.getMessage(), e);
+        }
+
+        // field, count read, actual count
+        List<String> corrections = new ArrayList<>();
+        actualCounts.forEach((hostId, count) -> {
+            var stored = storedSessionsPerHost.getOrDefault(hostId, 0);
+            if (stored.intValue() != count) {
+                Collections.addAll(corrections, hostId, String.valueOf(stored), String.valueOf(count));
+            }
+        });
+        storedSessionsPerHost.forEach((hostId, stored) -> {
+            if (!actualCounts.containsKey(hostId)) {
+                Collections.addAll(corrections, hostId, String.valueOf(stored), "0");
+            }
+        });
+
+        int repairedHosts = 0;
+        for (int from = 0; from < corrections.size(); from += RECONCILE_FIELDS_PER_CALL * 3) {
+            List<String> arguments = new ArrayList<>(List.of(RECONCILE_SCRIPT, "1", key));
+            arguments.addAll(corrections.subList(from, Math.min(from + RECONCILE_FIELDS_PER_CALL * 3, corrections.size())));
+            repairedHosts += ds.execute("EVAL", arguments.toArray(String[]::new)).toInteger();
+        }
+        return repairedHosts;
+    }
+
+    private static Map<String, Integer> withoutEmptyHosts(Map<String, Integer> counters) {
+        Map<String, Integer> sessionsPerHost = new HashMap<>();
+        counters.forEach((hostId, count) -> {
+            if (count != null && count > 0) {
+                sessionsPerHost.put(hostId, count);
+            }
+        });
+        return sessionsPerHost;
+    }
+}
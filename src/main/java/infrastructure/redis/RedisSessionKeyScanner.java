@@ -0,0 +1,124 @@
+package infrastructure.redis;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.keys.KeyCommands;
+import io.quarkus.redis.datasource.keys.ReactiveKeyCommands;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Discovers session keys without issuing a blocking {@code KEYS} against the shared Redis.
+ * Keys are walked with {@code SCAN} pages so callers can consume them incrementally, and a
+ * page cursor can be kept by the caller to resume an interrupted walk.
+ */
+@ApplicationScoped
+public class RedisSessionKeyScanner {
+
+    public static final String INITIAL_CURSOR = "0";
+
+    private static final String KEYS_DISCOVERY_MODE = "keys";
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.scan-count", defaultValue = "1000")
+    long scanCount;
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.key-discovery", defaultValue = "scan")
+    String keyDiscovery;
+
+    private final RedisDataSource ds;
+    private final KeyCommands<String> keyCommands;
+    private final ReactiveRedisDataSource reactiveDS;
+    private final ReactiveKeyCommands<String> reactiveKeyCommands;
+
+    public RedisSessionKeyScanner(RedisDataSource ds, ReactiveRedisDataSource reactiveDS) {
+        this.ds = ds;
+        this.keyCommands = ds.key();
+        this.reactiveDS = reactiveDS;
+        this.reactiveKeyCommands = reactiveDS.key();
+    }
+
+    public record ScanPage(String cursor, List<String> keys) {
+        public boolean isLast() {
+            return INITIAL_CURSOR.equals(cursor);
+        }
+    }
+
+    /**
+     * Reads a single SCAN page starting at the given cursor.
+     * @param pattern The key pattern to match, e.g. {@code WsSession#*}
+     * @param cursor The cursor returned by the previous page, or {@link #INITIAL_CURSOR}
+     * @return The keys of this page and the cursor to resume from
+     */
+    public ScanPage scan(String pattern, String cursor) {
+        return toScanPage(ds.execute("SCAN", cursor, "MATCH", pattern, "COUNT", String.valueOf(scanCount)));
+    }
+
+    /**
+     * Non-blocking variant of {@link #scan(String, String)}.
+     */
+    public Uni<ScanPage> scanAsync(String pattern, String cursor) {
+        return reactiveDS.execute("SCAN", cursor, "MATCH", pattern, "COUNT", String.valueOf(scanCount)).map(this::toScanPage);
+    }
+
+    /**
+     * Streams every key matching the pattern to the consumer, one page at a time.
+     * SCAN may return a key more than once while the keyspace is rehashing. Such keys are
+     * passed on as they are: remembering every delivered key would cost memory in the size of
+     * the keyspace, while a duplicate only overstates one host's count until the next walk.
+     */
+    public void forEachPage(String pattern, Consumer<List<String>> pageConsumer) {
+        if (KEYS_DISCOVERY_MODE.equalsIgnoreCase(keyDiscovery.trim())) {
+            pageConsumer.accept(keyCommands.keys(pattern));
+            return;
+        }
+
+        String cursor = INITIAL_CURSOR;
+        do {
+            var page = scan(pattern, cursor);
+            if (!page.keys().isEmpty()) {
+                pageConsumer.accept(page.keys());
+            }
+            cursor = page.cursor();
+        } while (!INITIAL_CURSOR.equals(cursor));
+    }
+
+    /**
+     * Non-blocking variant of {@link #forEachPage(String, Consumer)}: every subscription walks the
+     * keyspace once, requesting the next SCAN page only after the previous one was consumed.
+     * Like {@link #forEachPage(String, Consumer)} it may deliver a key twice during a rehash.
+     */
+    public Multi<List<String>> pages(String pattern) {
+        if (KEYS_DISCOVERY_MODE.equalsIgnoreCase(keyDiscovery.trim())) {
+            return reactiveKeyCommands.keys(pattern).toMulti();
+        }
+
+        return Multi.createFrom().deferred(() -> {
+            var cursor = new AtomicReference<>(INITIAL_CURSOR);
+            return Multi.createBy().repeating().uni(() -> scanAsync(pattern, cursor.get()))
+                    // whilst() still emits the last page, the one whose cursor is back to 0
+                    .whilst(page -> {
+                        cursor.set(page.cursor());
+                        return !page.isLast();
+                    })
+                    .map(ScanPage::keys)
+                    .filter(keys -> !keys.isEmpty());
+        });
+    }
+
+    private ScanPage toScanPage(Response response) {
+        List<String> keys = new ArrayList<>(response.get(1).size());
+        for (Response key : response.get(1)) {
+            keys.add(key.toString());
+        }
+        return new ScanPage(response.get(0).toString(), keys);
+    }
+}
@@ -0,0 +1,282 @@
+package infrastructure.redis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import domain.SessionTopology;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.quarkus.redis.datasource.value.ReactiveValueCommands;
+import io.quarkus.redis.datasource.value.ValueCommands;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Keeps the {@link SessionTopology} current from Redis keyspace notifications on the
+ * {@code WsSession#*}, {@code SseSession#*} and {@code GrpcSession#*} keys. Active when
+ * {@code app.connection-rebalancer.rebalance.trigger=events} or
+ * {@code app.connection-rebalancer.topology.enabled=true}. Only with the events trigger is a
+ * {@link SessionCountsChanged} event fired after every applied change, the topology alone does
+ * not start balance passes.
+ * <p>
+ * The topology is seeded with one SCAN + MGET pass on startup. Seeding and notifications run
+ * in order on a single virtual thread, off the Redis event loop, so a notification is never
+ * applied to a topology that a concurrent seed then overwrites.
+ * <p>
+ * Checksum verification runs on its own thread so notifications keep flowing during its SCAN.
+ * Keys changed by a notification while the SCAN runs are left out of both checksums, since
+ * the SCAN may have seen them before or after the change.
+ */
+@ApplicationScoped
+public class RedisSessionKeyspaceListener {
+
+    private static final Logger logger = Logger.getLogger(RedisSessionKeyspaceListener.class.getName());
+
+    // Keyspace (K) notifications for string ($), generic (g, del) and expired (x) events
+    private static final String REQUIRED_NOTIFY_FLAGS = "K$gx";
+
+    public record SessionCountsChanged(String protocol) {
+    }
+
+    private static final Map<String, String> KEY_PREFIX_PROTOCOLS = Map.of(
+            "WsSession#", SessionTopology.WS_PROTOCOL,
+            "SseSession#", SessionTopology.SSE_PROTOCOL,
+            "GrpcSession#", SessionTopology.GRPC_PROTOCOL);
+
+    @ConfigProperty(name = "app.connection-rebalancer.rebalance.trigger", defaultValue = "schedule")
+    String rebalanceTrigger;
+
+    @ConfigProperty(name = "app.connection-rebalancer.topology.enabled", defaultValue = "false")
+    boolean topologyEnabled;
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.keyspace-events.configure", defaultValue = "false")
+    boolean configureKeyspaceEvents;
+
+    private final RedisDataSource ds;
+    private final ValueCommands<String, String> valueCommands;
+    private final ReactiveValueCommands<String, String> reactiveValueCommands;
+    private final PubSubCommands<String> pubSubCommands;
+    private final RedisSessionKeyScanner keyScanner;
+    private final RedisSessionBatchFetcher batchFetcher;
+    private final ObjectMapper objectMapper;
+    private final Event<SessionCountsChanged> sessionCountsChanged;
+    private final SessionTopology sessionTopology;
+
+    private final Map<String, Integer> checksumMismatches = new HashMap<>();
+    private final Map<String, Set<String>> keysTouchedDuringScan = new ConcurrentHashMap<>();
+    private ExecutorService notificationExecutor;
+    private ExecutorService verificationExecutor;
+    private PubSubCommands.RedisSubscriber subscriber;
+
+    public RedisSessionKeyspaceListener(RedisDataSource ds, ReactiveRedisDataSource reactiveDS, RedisSessionKeyScanner keyScanner,
+            RedisSessionBatchFetcher batchFetcher, ObjectMapper objectMapper, Event<SessionCountsChanged> sessionCountsChanged,
+            SessionTopology sessionTopology) {
+        this.ds = ds;
+        this.valueCommands = ds.value(String.class);
+        this.reactiveValueCommands = reactiveDS.value(String.class);
+        this.pubSubCommands = ds.pubsub(String.class);
+        this.keyScanner = keyScanner;
+        this.batchFetcher = batchFetcher;
+        this.objectMapper = objectMapper;
+        this.sessionCountsChanged = sessionCountsChanged;
+        this.sessionTopology = sessionTopology;
+    }
+
+    public boolean isEnabled() {
+        return topologyEnabled || isEventTriggered();
+    }
+
+    private boolean isEventTriggered() {
+        return "events".equalsIgnoreCase(rebalanceTrigger.trim());
+    }
+
+    private void notifySessionCountsChanged(String protocol) {
+        if (isEventTriggered()) {
+            sessionCountsChanged.fire(new SessionCountsChanged(protocol));
+        }
+    }
+
+    /**
+     * Compares the topology of every protocol with a key-only SCAN of Redis and reseeds the
+     * protocols that drift twice in a row. Keys changed during the SCAN are left out of the
+     * comparison. A key changed after the SCAN counted it can still leave the SCAN ahead of the
+     * topology by up to the number of changed keys, so only a gap the changes cannot explain is
+     * drift. A smaller gap leaves the verdict to the next check.
+     */
+    public void verifyTopology() {
+        if (verificationExecutor == null) {
+            return;
+        }
+        verificationExecutor.execute(() -> KEY_PREFIX_PROTOCOLS.forEach((prefix, protocol) -> {
+            Set<String> touchedKeys = ConcurrentHashMap.newKeySet();
+            keysTouchedDuringScan.put(protocol, touchedKeys);
+            try {
+                var scannedChecksum = scanChecksum(prefix, touchedKeys);
+                var topologyChecksum = sessionTopology.checksumExcluding(protocol, touchedKeys);
+                var scanAhead = scannedChecksum.sessionCount() - topologyChecksum.sessionCount();
+                if (scannedChecksum.equals(topologyChecksum)) {
+                    checksumMismatches.remove(protocol);
+                } else if (scanAhead >= 0 && scanAhead <= touchedKeys.size() && !touchedKeys.isEmpty()) {
+                    logger.fine("The " + protocol + " session topology check is inconclusive, " + touchedKeys.size()
+                            + " keys changed during the scan");
+                } else if (checksumMismatches.merge(protocol, 1, Integer::sum) >= 2) {
+                    logger.warning("The " + protocol + " session topology drifted from Redis (" + topologyChecksum
+                            + " vs " + scannedChecksum + "), reseeding");
+                    checksumMismatches.remove(protocol);
+                    notificationExecutor.execute(() -> seed(prefix, protocol));
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error verifying " + protocol + " session topology: " + e.getMessage());
+            } finally {
+                keysTouchedDuringScan.remove(protocol);
+            }
+        }));
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (configureKeyspaceEvents) {
+            enableKeyspaceNotifications();
+        }
+        notificationExecutor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("redis-keyspace").factory());
+        verificationExecutor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("redis-keyspace-verify").factory());
+        // Subscribe before seeding so no change is lost, notifications queue up behind the seed
+        subscriber = pubSubCommands.subscribeToPatterns(
+                KEY_PREFIX_PROTOCOLS.keySet().stream().map(prefix -> "__keyspace@*__:" + prefix + "*").toList(),
+                (channel, keyEvent) -> notificationExecutor.execute(() -> apply(channel, keyEvent)));
+        notificationExecutor.execute(this::seed);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+        }
+        if (notificationExecutor != null) {
+            notificationExecutor.shutdownNow();
+            verificationExecutor.shutdownNow();
+        }
+    }
+
+    private void seed() {
+        KEY_PREFIX_PROTOCOLS.forEach(this::seed);
+    }
+
+    private void seed(String prefix, String protocol) {
+        try {
+            Map<String, String> hostBySessionKey = new HashMap<>();
+            keyScanner.forEachPage(prefix + "*", keys -> batchFetcher.fetchEntries(reactiveValueCommands, keys)
+                    .forEach((key, value) -> {
+                        var hostId = hostIdOf(value);
+                        if (hostId != null) {
+                            hostBySessionKey.put(key, hostId);
+                        }
+                    }));
+            sessionTopology.seed(protocol, hostBySessionKey);
+            logger.info("Seeded " + protocol + " session topology: " + sessionTopology.sessionsPerHost(protocol));
+            notifySessionCountsChanged(protocol);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error seeding " + protocol + " session topology: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fingerprints the session keys page by page as the SCAN returns them, skipping the keys
+     * a notification already changed.
+     */
+    private SessionTopology.Checksum scanChecksum(String prefix, Set<String> touchedKeys) {
+        long[] countAndHash = new long[2];
+        keyScanner.forEachPage(prefix + "*", keys -> {
+            for (var key : keys) {
+                if (!touchedKeys.contains(key)) {
+                    countAndHash[0]++;
+                    countAndHash[1] += SessionTopology.keyHash(key);
+                }
+            }
+        });
+        return new SessionTopology.Checksum(countAndHash[0], countAndHash[1]);
+    }
+
+    private void apply(String channel, String keyEvent) {
+        var key = channel.substring(channel.indexOf(':') + 1);
+        var protocol = protocolOf(key);
+        if (protocol == null) {
+            return;
+        }
+        var touchedKeys = keysTouchedDuringScan.get(protocol);
+        if (touchedKeys != null) {
+            touchedKeys.add(key);
+        }
+        try {
+            boolean changed = switch (keyEvent) {
+                case "set" -> sessionTopology.assign(protocol, key, hostIdOf(valueCommands.get(key)));
+                case "del", "expired", "evicted" -> sessionTopology.assign(protocol, key, null);
+                default -> false;
+            };
+            if (changed) {
+                notifySessionCountsChanged(protocol);
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error applying " + keyEvent + " notification for " + key + ": " + e.getMessage());
+        }
+    }
+
+    private String hostIdOf(String sessionJson) {
+        if (sessionJson == null) {
+            return null;
+        }
+        try {
+            var hostId = objectMapper.readTree(sessionJson).path("hostId");
+            return hostId.isTextual() ? hostId.asText() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String protocolOf(String key) {
+        for (var prefix : KEY_PREFIX_PROTOCOLS.entrySet()) {
+            if (key.startsWith(prefix.getKey())) {
+                return prefix.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void enableKeyspaceNotifications() {
+        try {
+            var response = ds.execute("CONFIG", "GET", "notify-keyspace-events");
+            // RESP3 answers with a map, RESP2 with a [name, value] pair
+            var current = response.containsKey("notify-keyspace-events")
+                    ? response.get("notify-keyspace-events").toString()
+                    : response.get(1).toString();
+            var flags = new StringBuilder(current);
+            for (char flag : REQUIRED_NOTIFY_FLAGS.toCharArray()) {
+                boolean coveredByAll = flag != 'K' && current.indexOf('A') >= 0;
+                if (flags.indexOf(String.valueOf(flag)) < 0 && !coveredByAll) {
+                    flags.append(flag);
+                }
+            }
+            if (!flags.toString().equals(current)) {
+                ds.execute("CONFIG", "SET", "notify-keyspace-events", flags.toString());
+                logger.info("Enabled Redis keyspace notifications: " + flags);
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not enable keyspace notifications, make sure notify-keyspace-events includes "
+                    + REQUIRED_NOTIFY_FLAGS + ": " + e.getMessage());
+        }
+    }
+}
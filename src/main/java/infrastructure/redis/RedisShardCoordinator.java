@@ -0,0 +1,244 @@
+package infrastructure.redis;
+
+import domain.ClusterSnapshot;
+import domain.utils.ConsistentHashRing;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.hash.HashCommands;
+import io.quarkus.redis.datasource.sortedset.ScoreRange;
+import io.quarkus.redis.datasource.sortedset.SortedSetCommands;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Splits the session hosts between rebalancer replicas for fleets too large for one of them.
+ * With {@code app.connection-rebalancer.sharding.enabled=true} every replica heartbeats into the
+ * sorted set {@code <sharding.key>:members} (scored by expiry), and the live members form a
+ * {@link ConsistentHashRing} that assigns every host to one replica. Each replica analyzes,
+ * plans and sheds only the hosts of its shard, so its work follows the shard size instead of
+ * the fleet size.
+ * <p>
+ * Decisions that need the whole cluster read a small aggregate instead of the whole fleet:
+ * every replica writes the totals of its shard to the hash {@code <sharding.key>:load}. Those
+ * totals lag by up to a heartbeat, so replicas scale by the delta of their own shard rather than
+ * to absolute targets derived from them. Actions that are
+ * taken once for the cluster, e.g. scaling an idle cluster down, are left to the coordinator,
+ * the first member by id. Members that miss their heartbeats for {@code sharding.member-ttl}
+ * drop out of the ring and their hosts move to the remaining replicas.
+ */
+@ApplicationScoped
+public class RedisShardCoordinator {
+
+    private static final Logger logger = Logger.getLogger(RedisShardCoordinator.class.getName());
+
+    /**
+     * Totals of one shard: sessions per protocol, and servers of the session app and of the gRPC app.
+     */
+    public record ShardLoad(int wsSessions, int sseSessions, int grpcSessions, int servers, int grpcServers) {
+
+        static final ShardLoad EMPTY = new ShardLoad(0, 0, 0, 0, 0);
+
+        static ShardLoad of(ClusterSnapshot shard) {
+            return new ShardLoad(
+                    sum(shard.wsSessionsPerHost()),
+                    sum(shard.sseSessionsPerHost()),
+                    sum(shard.grpcSessionsPerHost()),
+                    shard.consulActiveServices().size() + shard.consulInactiveServices().size()
+                            + shard.activePods().size() + shard.inactivePods().size(),
+                    shard.grpcConsulActiveServices().size() + shard.grpcConsulInactiveServices().size());
+        }
+
+        ShardLoad plus(ShardLoad other) {
+            return new ShardLoad(wsSessions + other.wsSessions, sseSessions + other.sseSessions, grpcSessions + other.grpcSessions,
+                    servers + other.servers, grpcServers + other.grpcServers);
+        }
+
+        public int sessions() {
+            return wsSessions + sseSessions + grpcSessions;
+        }
+
+        private static int sum(Map<String, Integer> sessionsPerHost) {
+            return sessionsPerHost.values().stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+
+    public record ShardStatus(String instanceId, boolean coordinator, List<String> members, ShardLoad shardLoad,
+            ShardLoad clusterLoad) {
+    }
+
+    @ConfigProperty(name = "app.connection-rebalancer.sharding.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.connection-rebalancer.sharding.key", defaultValue = "connection-rebalancer:shards")
+    String shardingKey;
+
+    @ConfigProperty(name = "app.connection-rebalancer.sharding.virtual-nodes", defaultValue = "128")
+    int virtualNodes;
+
+    @ConfigProperty(name = "app.connection-rebalancer.sharding.heartbeat-interval", defaultValue = "5s")
+    Duration heartbeatInterval;
+
+    @ConfigProperty(name = "app.connection-rebalancer.sharding.member-ttl", defaultValue = "15s")
+    Duration memberTtl;
+
+    @ConfigProperty(name = "app.connection-rebalancer.leader-election.enabled", defaultValue = "false")
+    boolean leaderElectionEnabled;
+
+    private final SortedSetCommands<String, String> memberCommands;
+    private final HashCommands<String, String, ShardLoad> loadCommands;
+    private final RedisLeaderElection leaderElection;
+    private ScheduledExecutorService executor;
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(List.of(), 1);
+    private volatile Map<String, ShardLoad> loads = Map.of();
+    private volatile long lastHeartbeatNanos;
+
+    public RedisShardCoordinator(RedisDataSource ds, RedisLeaderElection leaderElection) {
+        this.memberCommands = ds.sortedSet(String.class);
+        this.loadCommands = ds.hash(String.class, String.class, ShardLoad.class);
+        this.leaderElection = leaderElection;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Whether the host belongs to this replica, always true when sharding is disabled. A replica
+     * whose heartbeats failed for a member TTL owns nothing, the others have taken its hosts over by then
+     */
+    public boolean owns(String hostId) {
+        return !enabled || (isMember() && leaderElection.instanceId().equals(ring.owner(hostId)));
+    }
+
+    /**
+     * @return Whether this replica takes the actions made once for the whole cluster
+     */
+    public boolean isCoordinator() {
+        return !enabled || (isMember() && ring.members().get(0).equals(leaderElection.instanceId()));
+    }
+
+    /**
+     * @return The part of the snapshot this replica is responsible for, the whole snapshot when sharding is disabled
+     */
+    public ClusterSnapshot shardOf(ClusterSnapshot snapshot) {
+        return enabled ? snapshot.forShard(this::owns) : snapshot;
+    }
+
+    /**
+     * Publishes the totals of this replica's shard for the other replicas. Writes to Redis with the
+     * blocking client, so reactive callers run it off the event loop.
+     */
+    public void report(ClusterSnapshot shard) {
+        if (!enabled) {
+            return;
+        }
+        var load = ShardLoad.of(shard);
+        try {
+            loadCommands.hset(loadKey(), leaderElection.instanceId(), load);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error reporting the shard load: " + e.getMessage());
+        }
+        Map<String, ShardLoad> updated = new HashMap<>(loads);
+        updated.put(leaderElection.instanceId(), load);
+        loads = Map.copyOf(updated);
+    }
+
+    /**
+     * @return Totals of the shards of the other replicas, as of their last report
+     */
+    public ShardLoad outsideShard() {
+        var self = leaderElection.instanceId();
+        return loads.entrySet().stream()
+                .filter(entry -> !entry.getKey().equals(self))
+                .map(Map.Entry::getValue)
+                .reduce(ShardLoad.EMPTY, ShardLoad::plus);
+    }
+
+    public ShardStatus status() {
+        var self = leaderElection.instanceId();
+        var shardLoad = loads.getOrDefault(self, ShardLoad.EMPTY);
+        return new ShardStatus(self, isCoordinator(), ring.members(), shardLoad, shardLoad.plus(outsideShard()));
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (leaderElectionEnabled) {
+            // With sharding every replica is active on its own hosts, a single leader would leave the other shards idle
+            throw new IllegalStateException("app.connection-rebalancer.sharding.enabled and app.connection-rebalancer.leader-election.enabled"
+                    + " cannot both be set, sharding already fails over the hosts of a lost replica");
+        }
+        logger.info("Sharded rebalancing enabled for replica " + leaderElection.instanceId());
+        executor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("shard-coordinator").factory());
+        executor.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            // Leave the ring right away so the other replicas take the hosts over on their next heartbeat
+            memberCommands.zrem(membersKey(), leaderElection.instanceId());
+            loadCommands.hdel(loadKey(), leaderElection.instanceId());
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error leaving the rebalancer shard ring: " + e.getMessage());
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            var sentAt = System.nanoTime();
+            var now = System.currentTimeMillis();
+            memberCommands.zadd(membersKey(), now + memberTtl.toMillis(), leaderElection.instanceId());
+            memberCommands.zremrangebyscore(membersKey(), new ScoreRange<>(Double.NEGATIVE_INFINITY, (double) now));
+            var members = memberCommands.zrange(membersKey(), 0, -1);
+            if (!members.stream().sorted().toList().equals(ring.members())) {
+                logger.info("Rebalancer shard members changed from " + ring.members() + " to " + members.stream().sorted().toList());
+                ring = new ConsistentHashRing(members, virtualNodes);
+            }
+            lastHeartbeatNanos = sentAt;
+
+            Map<String, ShardLoad> current = new HashMap<>(loadCommands.hgetall(loadKey()));
+            var departed = current.keySet().stream().filter(member -> !members.contains(member)).toArray(String[]::new);
+            if (departed.length > 0) {
+                loadCommands.hdel(loadKey(), departed);
+                current.keySet().removeAll(List.of(departed));
+            }
+            loads = Map.copyOf(current);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error refreshing the rebalancer shard ring: " + e.getMessage());
+        }
+    }
+
+    private boolean isMember() {
+        return !ring.members().isEmpty() && System.nanoTime() - lastHeartbeatNanos < memberTtl.toNanos();
+    }
+
+    private String membersKey() {
+        return sanitizeEnvVariable(shardingKey) + ":members";
+    }
+
+    private String loadKey() {
+        return sanitizeEnvVariable(shardingKey) + ":load";
+    }
+
+    private String sanitizeEnvVariable(String envVariable) {
+        return envVariable.trim().replaceAll("^\"|\"$", "");
+    }
+}
@@ -3,61 +3,98 @@ package infrastructure.redis;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import domain.SsePersistentSession;
+import domain.ReactiveSseSessionRepository;
 import domain.SseSessionRepository;
+import domain.utils.HostSessionCounter;
+import io.quarkus.arc.lookup.LookupUnlessProperty;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.redis.datasource.keys.KeyCommands;
-import io.quarkus.redis.datasource.pubsub.PubSubCommands;
-import io.quarkus.redis.datasource.value.ValueCommands;
+import io.quarkus.redis.datasource.value.ReactiveValueCommands;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @ApplicationScoped
-public class RedisSseSessionRepository implements SseSessionRepository {
+@LookupUnlessProperty(name = "app.connection-rebalancer.redis.session-source", stringValue = "counters", lookupIfMissing = true)
+public class RedisSseSessionRepository implements SseSessionRepository, ReactiveSseSessionRepository {
     private static final TypeReference<SsePersistentSession> dsValueType = new TypeReference<>() {
     };
-    private static final TypeReference<Map<String, Integer>> dsPubSubValueType = new TypeReference<>() {
-    };
 
-    private final ValueCommands<String, SsePersistentSession> valueCommands;
+    private final ReactiveValueCommands<String, String> reactiveValueCommands;
     private final KeyCommands<String> sseSessionKeyCommands;
-    private final PubSubCommands<Map<String, Integer>> pubSubCommand;
+    private final RedisDropShedder dropShedder;
+    private final RedisDropCommandPublisher dropCommandPublisher;
 
     @SuppressWarnings("unused")
     private final ObjectMapper objectMapper;
 
-    public RedisSseSessionRepository(RedisDataSource ds, ObjectMapper objectMapper) {
-        this.valueCommands = ds.value(dsValueType);
+    private final RedisSessionKeyScanner keyScanner;
+    private final RedisSessionBatchFetcher batchFetcher;
+
+    public RedisSseSessionRepository(RedisDataSource ds, ReactiveRedisDataSource reactiveDS, ObjectMapper objectMapper,
+            RedisSessionKeyScanner keyScanner, RedisSessionBatchFetcher batchFetcher, RedisDropShedder dropShedder,
+            RedisDropCommandPublisher dropCommandPublisher) {
+        this.reactiveValueCommands = reactiveDS.value(String.class);
         this.sseSessionKeyCommands = ds.key();
         this.objectMapper = objectMapper;
-        this.pubSubCommand = ds.pubsub(dsPubSubValueType);
+        this.dropShedder = dropShedder;
+        this.dropCommandPublisher = dropCommandPublisher;
+        this.keyScanner = keyScanner;
+        this.batchFetcher = batchFetcher;
     }
 
     @Override
     public List<SsePersistentSession> findAllSessions() {
-        Iterable<String> keys = sseSessionKeyCommands.keys("SseSession#*");
-        Map<String, SsePersistentSession> result = new HashMap<>();
+        List<SsePersistentSession> result = new ArrayList<>();
+        scanSessions(result::addAll);
+        return List.copyOf(result);
+    }
 
-        try {
-            for (String key : keys) {
-                var value = valueCommands.get(key);
-                result.put(key, value);
-            }
-        } catch (Exception e) {
-            Logger.getAnonymousLogger().log(Level.SEVERE, "Error reading SSE sessions from Redis: " + e.getMessage(), e);
-        }
+    @Override
+    public void scanSessions(Consumer<List<SsePersistentSession>> batchConsumer) {
+        // Redis errors and fetch timeouts propagate, a partial scan must fail the tick rather than undercount hosts
+        keyScanner.forEachPage("SseSession#*", keys -> batchConsumer.accept(batchFetcher.fetch(reactiveValueCommands, keys, dsValueType)));
+    }
 
-        return List.copyOf(result.values());
+    @Override
+    public Map<String, Integer> countSessionsPerHost() {
+        var sessionsPerHost = new HostSessionCounter();
+        scanSessions(batch -> batch.forEach(session -> sessionsPerHost.increment(session.hostId())));
+        return sessionsPerHost.toMap();
+    }
+
+    @Override
+    public Multi<SsePersistentSession> streamSessions() {
+        // Each SCAN page is fetched once the previous one was consumed, no thread waits on Redis
+        return keyScanner.pages("SseSession#*")
+                .onItem().transformToMultiAndConcatenate(keys -> batchFetcher.stream(reactiveValueCommands, keys, dsValueType))
+                .onFailure().invoke(e -> Logger.getAnonymousLogger().log(Level.SEVERE,
+                        "Error reading SSE sessions from Redis: " + e.getMessage(), e));
+    }
+
+    @Override
+    public Uni<Map<String, Integer>> countSessionsPerHostAsync() {
+        return streamSessions()
+                .collect().in(HostSessionCounter::new, (sessionsPerHost, session) -> sessionsPerHost.increment(session.hostId()))
+                .map(HostSessionCounter::toMap);
     }
 
     @Override
     public void dropSseSessions(Map<String, Integer> numberOfConnectionsToDrop) {
-        Logger.getAnonymousLogger().log(Level.INFO,
-                "Publishing drop-persistent-sse-sessions command with data: " + numberOfConnectionsToDrop);
-        pubSubCommand.publish("drop-persistent-sse-sessions", numberOfConnectionsToDrop);
+        // One sequenced message per rebalance pass, or paced batches when shedding is enabled
+        dropShedder.shed("drop-persistent-sse-sessions", numberOfConnectionsToDrop);
+    }
+
+    @Override
+    public Map<String, Integer> inFlightDrops() {
+        return dropCommandPublisher.inFlightDrops("drop-persistent-sse-sessions");
     }
 }
@@ -4,66 +4,99 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import domain.PersistentSession;
+import domain.ReactiveWsSessionRepository;
 import domain.WsSessionRepository;
+import domain.utils.HostSessionCounter;
+import io.quarkus.arc.lookup.LookupUnlessProperty;
 import io.quarkus.redis.datasource.ReactiveRedisDataSource;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.redis.datasource.keys.KeyCommands;
 import io.quarkus.redis.datasource.keys.ReactiveKeyCommands;
-import io.quarkus.redis.datasource.pubsub.PubSubCommands;
 import io.quarkus.redis.datasource.value.ReactiveValueCommands;
-import io.quarkus.redis.datasource.value.ValueCommands;
 import io.quarkus.vertx.http.runtime.devmode.Json;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.Multi;
 import jakarta.enterprise.context.ApplicationScoped;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @ApplicationScoped
-public class RedisWsSessionRepository implements WsSessionRepository {
+@LookupUnlessProperty(name = "app.connection-rebalancer.redis.session-source", stringValue = "counters", lookupIfMissing = true)
+public class RedisWsSessionRepository implements WsSessionRepository, ReactiveWsSessionRepository {
     private static final TypeReference<PersistentSession> dsValueType = new TypeReference<>() {};
-    private static final TypeReference<Map<String, Integer>> dsPubSubValueType = new TypeReference<>() {};
-    private final ValueCommands<String, PersistentSession> valueCommands;
-    private final ReactiveValueCommands<String, PersistentSession> reactiveValueCommands;
+    private final ReactiveValueCommands<String, String> reactiveValueCommands;
     private final ReactiveKeyCommands<String> reactiveWsSessionKeyCommands;
     private final KeyCommands<String> wsSessionKeyCommands;
-    private final PubSubCommands<Map<String, Integer>> pubSubCommand;
+    private final RedisDropShedder dropShedder;
+    private final RedisDropCommandPublisher dropCommandPublisher;
     private final ObjectMapper objectMapper;
+    private final RedisSessionKeyScanner keyScanner;
+    private final RedisSessionBatchFetcher batchFetcher;
 
-    public RedisWsSessionRepository(RedisDataSource ds, ReactiveRedisDataSource reactiveDS, ObjectMapper objectMapper) {
-        this.valueCommands = ds.value(dsValueType);
-        this.reactiveValueCommands = reactiveDS.value(dsValueType);
+    public RedisWsSessionRepository(RedisDataSource ds, ReactiveRedisDataSource reactiveDS, ObjectMapper objectMapper,
+            RedisSessionKeyScanner keyScanner, RedisSessionBatchFetcher batchFetcher, RedisDropShedder dropShedder,
+            RedisDropCommandPublisher dropCommandPublisher) {
+        this.reactiveValueCommands = reactiveDS.value(String.class);
         this.reactiveWsSessionKeyCommands = reactiveDS.key();
         this.wsSessionKeyCommands = ds.key();
         this.objectMapper = objectMapper;
-        this.pubSubCommand = ds.pubsub(dsPubSubValueType);
+        this.dropShedder = dropShedder;
+        this.dropCommandPublisher = dropCommandPublisher;
+        this.keyScanner = keyScanner;
+        this.batchFetcher = batchFetcher;
     }
 
     @Override
     public List<PersistentSession> findAllSessions() {
-        // Use the imperative API's key commands
-        Iterable<String> keys = wsSessionKeyCommands.keys("WsSession#*"); // Caution: Use with care in production
-        Map<String, PersistentSession> result = new HashMap<>();
+        List<PersistentSession> result = new ArrayList<>();
+        scanSessions(result::addAll);
+        return List.copyOf(result);
+    }
 
-        try {
-            for (String key : keys) {
-                var value = valueCommands.get(key);
-                result.put(key, value);
-            }
-        } catch (Exception e) {
-            Logger.getAnonymousLogger().log(Level.SEVERE, "Error processing JSON: " + e.getMessage(), e);
-        }
+    @Override
+    public void scanSessions(Consumer<List<PersistentSession>> batchConsumer) {
+        // Sessions that expired between the SCAN page and the MGET are dropped by the fetcher
+        // Redis errors and fetch timeouts propagate, a partial scan must fail the tick rather than undercount hosts
+        keyScanner.forEachPage("WsSession#*", keys -> batchConsumer.accept(batchFetcher.fetch(reactiveValueCommands, keys, dsValueType)));
+    }
 
-        return List.copyOf(result.values());
+    @Override
+    public Map<String, Integer> countSessionsPerHost() {
+        var sessionsPerHost = new HostSessionCounter();
+        scanSessions(batch -> batch.forEach(session -> sessionsPerHost.increment(session.hostId())));
+        return sessionsPerHost.toMap();
+    }
+
+    @Override
+    public Multi<PersistentSession> streamSessions() {
+        // Each SCAN page is fetched once the previous one was consumed, no thread waits on Redis
+        return keyScanner.pages("WsSession#*")
+                .onItem().transformToMultiAndConcatenate(keys -> batchFetcher.stream(reactiveValueCommands, keys, dsValueType))
+                .onFailure().invoke(e -> Logger.getAnonymousLogger().log(Level.SEVERE,
+                        "Error reading sessions from Redis: " + e.getMessage(), e));
+    }
+
+    @Override
+    public Uni<Map<String, Integer>> countSessionsPerHostAsync() {
+        return streamSessions()
+                .collect().in(HostSessionCounter::new, (sessionsPerHost, session) -> sessionsPerHost.increment(session.hostId()))
+                .map(HostSessionCounter::toMap);
     }
 
     @Override
     public void dropWsSessions(Map<String, Integer> numberOfConnectionsToDrop) {
-        Logger.getAnonymousLogger().log(Level.INFO, "Publishing drop-persistent-sessions command with data: " + numberOfConnectionsToDrop.toString());  
-        pubSubCommand.publish("drop-persistent-sessions", numberOfConnectionsToDrop);
+        // One sequenced message per rebalance pass, or paced batches when shedding is enabled
+        dropShedder.shed("drop-persistent-sessions", numberOfConnectionsToDrop);
+    }
+
+    @Override
+    public Map<String, Integer> inFlightDrops() {
+        return dropCommandPublisher.inFlightDrops("drop-persistent-sessions");
     }
 
     private String formattedKey(String key) {
@@ -0,0 +1,59 @@
+package infrastructure.resources.rest;
+
+import api.ScalingApi;
+import domain.DropLedger;
+import infrastructure.redis.RedisLeaderElection;
+import infrastructure.redis.RedisShardCoordinator;
+import infrastructure.scheduler.AdaptiveInterval;
+import infrastructure.scheduler.RebalancerSchedule;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.List;
+
+@Path("/rebalancer")
+public class Rebalancer {
+
+    @Inject
+    private ScalingApi api;
+
+    @Inject
+    private RebalancerSchedule rebalancerSchedule;
+
+    @Inject
+    private RedisLeaderElection leaderElection;
+
+    @Inject
+    private RedisShardCoordinator shardCoordinator;
+
+    @GET
+    @Path("in-flight")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<DropLedger.InFlightDrop> getInFlightDrops() {
+        return api.inFlightDrops();
+    }
+
+    @GET
+    @Path("schedule")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<AdaptiveInterval.Status> getSchedule() {
+        return rebalancerSchedule.status();
+    }
+
+    @GET
+    @Path("leader")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RedisLeaderElection.Leadership getLeader() {
+        return leaderElection.status();
+    }
+
+    @GET
+    @Path("shards")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RedisShardCoordinator.ShardStatus getShards() {
+        return shardCoordinator.status();
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.enterprise.context.ApplicationScoped;
 import java.util.List;
 
 import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.resteasy.reactive.RestResponse;
 
 import infrastructure.resources.rest.client.ConsulClient;
 import infrastructure.resources.rest.dto.ConsulService;
@@ -35,4 +36,9 @@ public class RestConsulClient implements ConsulClient {
     public List<ConsulService> getServiceInstances(String serviceName) {
         return consulClient.getServiceInstances(serviceName);
     }
+
+    @Override
+    public RestResponse<List<ConsulService>> watchServiceInstances(String serviceName, long index, String wait) {
+        return consulClient.watchServiceInstances(serviceName, index, wait);
+    }
 }
@@ -8,6 +8,7 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.QueryParam;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+import org.jboss.resteasy.reactive.RestResponse;
 
 import infrastructure.resources.rest.dto.ConsulService;
 
@@ -20,4 +21,12 @@ public interface ConsulClient {
     @GET
     @Path("/v1/health/service/{serviceName}")
     List<ConsulService> getServiceInstances(@PathParam("serviceName") String serviceName);
+
+    /**
+     * Blocking query: Consul holds the request until the service health index moves past
+     * {@code index} or {@code wait} elapses. The new index is returned in the X-Consul-Index header.
+     */
+    @GET
+    @Path("/v1/health/service/{serviceName}")
+    RestResponse<List<ConsulService>> watchServiceInstances(@PathParam("serviceName") String serviceName, @QueryParam("index") long index, @QueryParam("wait") String wait);
 }
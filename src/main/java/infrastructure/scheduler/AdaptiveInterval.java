@@ -0,0 +1,65 @@
+package infrastructure.scheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Interval of one rebalancer job that follows the cluster: it halves after a tick that found
+ * the cluster unsettled (drops in flight or sessions churning) and grows by a quarter after a
+ * settled one, within {@code [min, max]}. It is never shorter than twice the last measured
+ * tick, so a slow cluster is not polled back to back.
+ */
+public final class AdaptiveInterval {
+
+    public record Status(String job, Duration interval, Duration lastTickDuration, Instant lastTickAt, Instant nextTickAt,
+            boolean unsettled) {
+    }
+
+    private final String job;
+    private final Duration min;
+    private final Duration max;
+    private final boolean adaptive;
+
+    private Duration interval;
+    private Duration lastTickDuration = Duration.ZERO;
+    private Instant lastTickAt;
+    private Instant nextTickAt = Instant.now();
+    private boolean unsettled;
+
+    AdaptiveInterval(String job, Duration base, Duration min, Duration max, boolean adaptive) {
+        this.job = job;
+        this.min = min.compareTo(max) <= 0 ? min : max;
+        this.max = max;
+        this.adaptive = adaptive;
+        this.interval = base;
+    }
+
+    synchronized boolean isDue() {
+        return !Instant.now().isBefore(nextTickAt);
+    }
+
+    /**
+     * Records a finished tick and schedules the next one.
+     * @param tickDuration How long the tick took
+     * @param clusterUnsettled Whether the tick found work still going on in the cluster
+     */
+    synchronized void completed(Duration tickDuration, boolean clusterUnsettled) {
+        lastTickDuration = tickDuration;
+        lastTickAt = Instant.now();
+        unsettled = clusterUnsettled;
+        if (adaptive) {
+            var next = clusterUnsettled ? interval.dividedBy(2) : interval.plus(interval.dividedBy(4));
+            var floor = max(min, tickDuration.multipliedBy(2));
+            interval = max(floor, next.compareTo(max) > 0 ? max : next);
+        }
+        nextTickAt = lastTickAt.plus(interval);
+    }
+
+    synchronized Status status() {
+        return new Status(job, interval, lastTickDuration, lastTickAt, nextTickAt, unsettled);
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+}
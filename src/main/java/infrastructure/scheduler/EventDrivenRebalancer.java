@@ -0,0 +1,133 @@
+package infrastructure.scheduler;
+
+import api.ScalingApi;
+import domain.SessionTopology;
+import infrastructure.redis.RedisLeaderElection;
+import infrastructure.redis.RedisSessionKeyspaceListener.SessionCountsChanged;
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Runs the balance analysis as soon as a session change pushes a host past the
+ * overutilization tolerance, instead of waiting for the next scheduled pass. Changes are
+ * debounced: a check waits until no change arrived for {@code rebalance.debounce}, so a burst
+ * of connects is looked at once, and the imbalance of each changed protocol is computed once
+ * per window rather than on every notification. Under continuous churn a window is closed
+ * after {@code rebalance.min-interval} at the latest. Passes are spaced by that minimum
+ * interval so the drops of the previous pass can land first. The fixed schedule in
+ * {@link RebalancerTask} stays as a safety net.
+ */
+@ApplicationScoped
+public class EventDrivenRebalancer {
+
+    private static final Logger logger = Logger.getLogger(EventDrivenRebalancer.class.getName());
+
+    @ConfigProperty(name = "connection.limit.per.host")
+    Integer maxSessionsPerServer;
+
+    @ConfigProperty(name = "overutilized.tolerance.percent")
+    Integer overutilizedTolerancePercent;
+
+    @ConfigProperty(name = "app.connection-rebalancer.rebalance.debounce", defaultValue = "2s")
+    Duration debounce;
+
+    @ConfigProperty(name = "app.connection-rebalancer.rebalance.min-interval", defaultValue = "10s")
+    Duration minInterval;
+
+    @Inject
+    ScalingApi scalingApi;
+
+    @Inject
+    SessionTopology sessionTopology;
+
+    @Inject
+    RedisLeaderElection leaderElection;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("event-driven-rebalancer").factory());
+    private final Set<String> changedProtocols = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean checkPending = new AtomicBoolean();
+    private final AtomicBoolean rebalancePending = new AtomicBoolean();
+    private volatile long firstChangeNanos;
+    private volatile long lastChangeNanos;
+    private volatile long lastRebalanceNanos;
+
+    void onSessionCountsChanged(@Observes SessionCountsChanged event) {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        var now = System.nanoTime();
+        lastChangeNanos = now;
+        changedProtocols.add(event.protocol());
+        if (checkPending.compareAndSet(false, true)) {
+            firstChangeNanos = now;
+            executor.schedule(this::checkWhenQuiet, debounce.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        executor.shutdownNow();
+    }
+
+    private void checkWhenQuiet() {
+        var now = System.nanoTime();
+        var quietNanos = now - lastChangeNanos;
+        var maxWaitNanos = Math.max(debounce.toNanos(), minInterval.toNanos());
+        if (quietNanos < debounce.toNanos() && now - firstChangeNanos < maxWaitNanos) {
+            executor.schedule(this::checkWhenQuiet, debounce.toNanos() - quietNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        // Changes from here on open a new window
+        checkPending.set(false);
+        var imbalanced = false;
+        for (var protocol : List.copyOf(changedProtocols)) {
+            changedProtocols.remove(protocol);
+            imbalanced |= isImbalanced(protocol);
+        }
+        if (imbalanced && rebalancePending.compareAndSet(false, true)) {
+            var untilMinInterval = minInterval.toNanos() - (now - lastRebalanceNanos);
+            executor.schedule(this::rebalance, Math.max(0, untilMinInterval), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean isImbalanced(String protocol) {
+        var sessionsPerHost = sessionTopology.sessionsPerHost(protocol);
+        if (sessionsPerHost.size() < 2 || maxSessionsPerServer <= 0) {
+            return false;
+        }
+        var totalSessions = sessionsPerHost.values().stream().mapToInt(Integer::intValue).sum();
+        var busiestHostSessions = sessionsPerHost.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        var overallUtilizationPercent = (int) ((float) totalSessions / (sessionsPerHost.size() * maxSessionsPerServer) * 100);
+        var busiestHostUtilizationPercent = (int) ((float) busiestHostSessions / maxSessionsPerServer * 100);
+        return busiestHostUtilizationPercent > overallUtilizationPercent + overutilizedTolerancePercent;
+    }
+
+    private void rebalance() {
+        rebalancePending.set(false);
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        lastRebalanceNanos = System.nanoTime();
+        try {
+            logger.info("Session imbalance detected, running event-driven rebalance");
+            scalingApi.analyzeSessionServerBalance();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error running event-driven rebalance: " + e.getMessage(), e);
+        }
+    }
+}
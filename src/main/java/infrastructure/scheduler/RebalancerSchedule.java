@@ -0,0 +1,148 @@
+package infrastructure.scheduler;
+
+import domain.ClusterSnapshot;
+import domain.DropLedger;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Effective intervals of the utilization and balance jobs of {@link RebalancerTask}. The jobs
+ * are polled at a fine resolution and only run once their {@link AdaptiveInterval} is due; a
+ * job is considered unsettled when the share of sessions that moved between hosts since its
+ * previous tick exceeds {@code scheduler.churn-threshold}, and the balance job also while the
+ * {@link DropLedger} still has drops in flight.
+ */
+@ApplicationScoped
+public class RebalancerSchedule {
+
+    private static final Logger logger = Logger.getLogger(RebalancerSchedule.class.getName());
+
+    @ConfigProperty(name = "app.connection-rebalancer.scheduler.adaptive", defaultValue = "true")
+    boolean adaptive;
+
+    @ConfigProperty(name = "app.connection-rebalancer.scheduler.churn-threshold", defaultValue = "0.05")
+    double churnThreshold;
+
+    @ConfigProperty(name = "app.connection-rebalancer.utilization.interval", defaultValue = "10s")
+    Duration utilizationInterval;
+
+    @ConfigProperty(name = "app.connection-rebalancer.utilization.min-interval", defaultValue = "5s")
+    Duration utilizationMinInterval;
+
+    @ConfigProperty(name = "app.connection-rebalancer.utilization.max-interval", defaultValue = "60s")
+    Duration utilizationMaxInterval;
+
+    @ConfigProperty(name = "app.connection-rebalancer.rebalance.interval", defaultValue = "60s")
+    Duration balanceInterval;
+
+    @ConfigProperty(name = "app.connection-rebalancer.rebalance.adaptive-min-interval", defaultValue = "15s")
+    Duration balanceMinInterval;
+
+    @ConfigProperty(name = "app.connection-rebalancer.rebalance.adaptive-max-interval", defaultValue = "5m")
+    Duration balanceMaxInterval;
+
+    @Inject
+    DropLedger dropLedger;
+
+    private AdaptiveInterval utilization;
+    private AdaptiveInterval balance;
+    private final Map<String, Map<String, Integer>> previousSessions = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        utilization = new AdaptiveInterval("utilization", utilizationInterval, utilizationMinInterval, utilizationMaxInterval, adaptive);
+        balance = new AdaptiveInterval("balance", balanceInterval, balanceMinInterval, balanceMaxInterval, adaptive);
+    }
+
+    /**
+     * @return The effective interval, last tick duration and next tick of every job
+     */
+    public List<AdaptiveInterval.Status> status() {
+        return List.of(utilization.status(), balance.status());
+    }
+
+    void runBalanceIfDue(Supplier<ClusterSnapshot> tick) {
+        runIfDue(balance, tick, true);
+    }
+
+    /**
+     * Runs the utilization tick once its interval is due. The tick is timed until its Uni completes.
+     */
+    Uni<Void> runUtilizationIfDueAsync(Supplier<Uni<ClusterSnapshot>> tick) {
+        if (!utilization.isDue()) {
+            return Uni.createFrom().voidItem();
+        }
+        var start = System.nanoTime();
+        return Uni.createFrom().deferred(tick::get)
+                .map(snapshot -> unsettled(utilization, snapshot, false))
+                .onFailure().recoverWithItem(e -> {
+                    logger.log(Level.SEVERE, "Error running " + utilization.status().job() + " tick: " + e.getMessage(), e);
+                    return false;
+                })
+                .invoke(unsettled -> utilization.completed(Duration.ofNanos(System.nanoTime() - start), unsettled))
+                .replaceWithVoid();
+    }
+
+    private void runIfDue(AdaptiveInterval interval, Supplier<ClusterSnapshot> tick, boolean watchInFlightDrops) {
+        if (!interval.isDue()) {
+            return;
+        }
+        var start = System.nanoTime();
+        // A failed tick counts as settled, so errors back the job off instead of speeding it up
+        boolean unsettled = false;
+        try {
+            unsettled = unsettled(interval, tick.get(), watchInFlightDrops);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error running " + interval.status().job() + " tick: " + e.getMessage(), e);
+        } finally {
+            interval.completed(Duration.ofNanos(System.nanoTime() - start), unsettled);
+        }
+    }
+
+    private boolean unsettled(AdaptiveInterval interval, ClusterSnapshot snapshot, boolean watchInFlightDrops) {
+        return churn(interval.status().job(), snapshot) > churnThreshold
+                || (watchInFlightDrops && !dropLedger.inFlightDrops().isEmpty());
+    }
+
+    /**
+     * @return Sessions that changed host since the job's previous tick, as a share of all sessions
+     */
+    private synchronized double churn(String job, ClusterSnapshot snapshot) {
+        if (snapshot == null) {
+            return 0;
+        }
+        Map<String, Integer> sessions = new HashMap<>();
+        snapshot.wsSessionsPerHost().forEach((hostId, count) -> sessions.put("ws:" + hostId, count));
+        snapshot.sseSessionsPerHost().forEach((hostId, count) -> sessions.put("sse:" + hostId, count));
+        snapshot.grpcSessionsPerHost().forEach((hostId, count) -> sessions.put("grpc:" + hostId, count));
+        var previous = previousSessions.put(job, sessions);
+        if (previous == null) {
+            return 0;
+        }
+
+        long moved = 0;
+        long total = 0;
+        for (var entry : sessions.entrySet()) {
+            moved += Math.abs(entry.getValue() - previous.getOrDefault(entry.getKey(), 0));
+            total += entry.getValue();
+        }
+        for (var entry : previous.entrySet()) {
+            if (!sessions.containsKey(entry.getKey())) {
+                moved += entry.getValue();
+            }
+        }
+        return (double) moved / Math.max(1, total);
+    }
+}
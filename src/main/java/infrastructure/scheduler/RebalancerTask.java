@@ -1,27 +1,57 @@
 package infrastructure.scheduler;
 
 import api.ScalingApi;
-import api.SseSessionApi;
-import api.WsSessionApi;
+import domain.utils.ProtocolTaskRunner;
+import infrastructure.redis.RedisLeaderElection;
 import io.quarkus.scheduler.Scheduled;
+import io.quarkus.scheduler.Scheduled.ConcurrentExecution;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 @ApplicationScoped
 public class RebalancerTask {
 
+    private static final String REACTIVE_ANALYSIS_MODE = "reactive";
+
+    @ConfigProperty(name = "app.connection-rebalancer.analysis.mode", defaultValue = "blocking")
+    String analysisMode;
+
     @Inject
     private ScalingApi scalingApi;
 
-    @Scheduled(every = "60s")
+    @Inject
+    private RebalancerSchedule rebalancerSchedule;
+
+    @Inject
+    private ProtocolTaskRunner protocolTaskRunner;
+
+    @Inject
+    private RedisLeaderElection leaderElection;
+
+    // Polled at a fine resolution, the job only runs once its adaptive interval is due.
+    // With app.connection-rebalancer.rebalance.trigger=events this is only the safety net
+    @Scheduled(every = "${app.connection-rebalancer.scheduler.resolution:1s}", concurrentExecution = ConcurrentExecution.SKIP)
     public void analyzeConnectionRebalance(){
-        scalingApi.analyzeSessionServerBalance();
+        // Standby replicas keep their caches warm but leave the cluster to the leader
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        rebalancerSchedule.runBalanceIfDue(scalingApi::analyzeSessionServerBalance);
     }
 
-    @Scheduled(every = "10s")
-    public void analyzeServerUtilization(){
-        scalingApi.analyzeSessionServerUtilization();
-    }    
+    // Non-blocking job: with analysis.mode=reactive the tick holds no thread while waiting on Redis,
+    // otherwise the blocking analysis is offloaded to a virtual thread. SKIP waits for the Uni to complete
+    @Scheduled(every = "${app.connection-rebalancer.scheduler.resolution:1s}", concurrentExecution = ConcurrentExecution.SKIP)
+    public Uni<Void> analyzeServerUtilization(){
+        if (!leaderElection.isLeader()) {
+            return Uni.createFrom().voidItem();
+        }
+        if (REACTIVE_ANALYSIS_MODE.equalsIgnoreCase(analysisMode.trim())) {
+            return rebalancerSchedule.runUtilizationIfDueAsync(scalingApi::analyzeSessionServerUtilizationAsync);
+        }
+        return rebalancerSchedule.runUtilizationIfDueAsync(() -> protocolTaskRunner.offload(scalingApi::analyzeSessionServerUtilization));
+    }
 }
@@ -0,0 +1,73 @@
+package infrastructure.scheduler;
+
+import infrastructure.redis.RedisGrpcSessionRepository;
+import infrastructure.redis.RedisLeaderElection;
+import infrastructure.redis.RedisSessionCounterStore;
+import infrastructure.redis.RedisShardCoordinator;
+import infrastructure.redis.RedisSseSessionRepository;
+import infrastructure.redis.RedisWsSessionRepository;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Repairs drift in the {@code SessionCount:*} hashes (missed HINCRBY on a tracker crash,
+ * expired keys without a decrement) by recounting the session keys with a SCAN.
+ * Only runs when the counter-based session source is selected.
+ */
+@ApplicationScoped
+public class SessionCounterReconciler {
+
+    private static final Logger logger = Logger.getLogger(SessionCounterReconciler.class.getName());
+
+    @ConfigProperty(name = "app.connection-rebalancer.redis.session-source", defaultValue = "scan")
+    String sessionSource;
+
+    @Inject
+    RedisSessionCounterStore counterStore;
+
+    @Inject
+    RedisWsSessionRepository wsSessionRepository;
+
+    @Inject
+    RedisSseSessionRepository sseSessionRepository;
+
+    @Inject
+    RedisGrpcSessionRepository grpcSessionRepository;
+
+    @Inject
+    RedisLeaderElection leaderElection;
+
+    @Inject
+    RedisShardCoordinator shardCoordinator;
+
+    @Scheduled(every = "${app.connection-rebalancer.redis.counter-reconcile-interval:5m}", delayed = "30s")
+    public void reconcileSessionCounters() {
+        // One full SCAN per cluster is enough, the standbys read the repaired counters
+        if (!"counters".equalsIgnoreCase(sessionSource.trim()) || !leaderElection.isLeader() || !shardCoordinator.isCoordinator()) {
+            return;
+        }
+        // The recounts throw when a SCAN page or MGET batch fails, so a protocol is skipped rather than repaired from a partial count
+        reconcile(RedisSessionCounterStore.WS_PROTOCOL, wsSessionRepository::countSessionsPerHost);
+        reconcile(RedisSessionCounterStore.SSE_PROTOCOL, sseSessionRepository::countSessionsPerHost);
+        reconcile(RedisSessionCounterStore.GRPC_PROTOCOL, grpcSessionRepository::countSessionsPerHost);
+    }
+
+    private void reconcile(String protocol, Supplier<Map<String, Integer>> actualSessionsPerHost) {
+        try {
+            var repairedHosts = counterStore.reconcile(protocol, actualSessionsPerHost);
+            if (repairedHosts > 0) {
+                logger.info("Repaired " + repairedHosts + " drifted " + protocol + " session counters");
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Skipped reconciling the " + protocol + " session counters until the next run: " + e.getMessage(), e);
+        }
+    }
+}
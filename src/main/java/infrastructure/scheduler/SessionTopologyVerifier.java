@@ -0,0 +1,24 @@
+package infrastructure.scheduler;
+
+import infrastructure.redis.RedisSessionKeyspaceListener;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Periodically checks the event-fed session topology against a key-only SCAN of Redis,
+ * so notifications lost while the subscription was reconnecting are eventually repaired.
+ */
+@ApplicationScoped
+public class SessionTopologyVerifier {
+
+    @Inject
+    RedisSessionKeyspaceListener keyspaceListener;
+
+    @Scheduled(every = "${app.connection-rebalancer.topology.verify-interval:5m}", delayed = "1m")
+    public void verifySessionTopology() {
+        if (keyspaceListener.isEnabled()) {
+            keyspaceListener.verifyTopology();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DropLedgerTest {
+
+    private DropLedger dropLedger;
+
+    @BeforeEach
+    void setUp() {
+        dropLedger = new DropLedger();
+        dropLedger.inFlightTtl = Duration.ofMinutes(2);
+    }
+
+    @Test
+    void hasNothingOutstandingBeforeAPlanIsRecorded() {
+        assertTrue(dropLedger.outstanding("ws", Map.of("10.0.0.1", 100)).isEmpty());
+    }
+
+    @Test
+    void countsTheSessionsAHostShedAgainstItsRequest() {
+        dropLedger.record("ws", Map.of("10.0.0.1", 30), Map.of("10.0.0.1", 100));
+
+        assertEquals(Map.of("10.0.0.1", 30), dropLedger.outstanding("ws", Map.of("10.0.0.1", 100)));
+        assertEquals(Map.of("10.0.0.1", 10), dropLedger.outstanding("ws", Map.of("10.0.0.1", 80)));
+    }
+
+    @Test
+    void closesADropOnceTheHostShedTheWholeRequest() {
+        dropLedger.record("ws", Map.of("10.0.0.1", 30), Map.of("10.0.0.1", 100));
+
+        assertTrue(dropLedger.outstanding("ws", Map.of("10.0.0.1", 65)).isEmpty());
+        assertTrue(dropLedger.inFlightDrops().isEmpty());
+    }
+
+    @Test
+    void treatsAHostThatLeftAsHavingShedEverything() {
+        dropLedger.record("ws", Map.of("10.0.0.1", 30), Map.of("10.0.0.1", 100));
+
+        assertTrue(dropLedger.outstanding("ws", Map.of()).isEmpty());
+    }
+
+    @Test
+    void mergesANewRequestWithTheRemainderOfThePreviousOne() {
+        dropLedger.record("ws", Map.of("10.0.0.1", 30), Map.of("10.0.0.1", 100));
+        dropLedger.outstanding("ws", Map.of("10.0.0.1", 90));
+        dropLedger.record("ws", Map.of("10.0.0.1", 5), Map.of("10.0.0.1", 90));
+
+        assertEquals(Map.of("10.0.0.1", 25), dropLedger.outstanding("ws", Map.of("10.0.0.1", 90)));
+    }
+
+    @Test
+    void closesADropThatOutlivedItsTtl() {
+        dropLedger.inFlightTtl = Duration.ofSeconds(-1);
+        dropLedger.record("ws", Map.of("10.0.0.1", 30), Map.of("10.0.0.1", 100));
+
+        assertTrue(dropLedger.outstanding("ws", Map.of("10.0.0.1", 100)).isEmpty());
+    }
+
+    @Test
+    void keepsProtocolsApartAndListsDropsInOrder() {
+        dropLedger.record("ws", Map.of("10.0.0.2", 10, "10.0.0.1", 20), Map.of("10.0.0.1", 100, "10.0.0.2", 100));
+        dropLedger.record("grpc", Map.of("10.0.0.3", 5), Map.of("10.0.0.3", 50));
+
+        assertTrue(dropLedger.outstanding("sse", Map.of("10.0.0.1", 100)).isEmpty());
+        var inFlight = dropLedger.inFlightDrops();
+        assertEquals(3, inFlight.size());
+        assertEquals("grpc", inFlight.get(0).protocol());
+        assertEquals("10.0.0.1", inFlight.get(1).hostId());
+        assertEquals("10.0.0.2", inFlight.get(2).hostId());
+    }
+}
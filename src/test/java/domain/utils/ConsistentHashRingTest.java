@@ -0,0 +1,85 @@
+package domain.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int HOSTS = 10_000;
+
+    @Test
+    void hasNoOwnerWithoutMembers() {
+        assertNull(new ConsistentHashRing(List.of(), 128).owner("10.0.0.1"));
+    }
+
+    @Test
+    void listsItsMembersSortedAndDistinct() {
+        var ring = new ConsistentHashRing(List.of("replica-b", "replica-a", "replica-b"), 128);
+
+        assertEquals(List.of("replica-a", "replica-b"), ring.members());
+    }
+
+    @Test
+    void assignsTheSameOwnerRegardlessOfMemberOrder() {
+        var ring = new ConsistentHashRing(List.of("replica-a", "replica-b", "replica-c"), 128);
+        var reordered = new ConsistentHashRing(List.of("replica-c", "replica-a", "replica-b"), 128);
+
+        for (int host = 0; host < HOSTS; host++) {
+            assertEquals(ring.owner(hostId(host)), reordered.owner(hostId(host)));
+        }
+    }
+
+    @Test
+    void spreadsTheHostsEvenlyOverTheMembers() {
+        var ring = new ConsistentHashRing(List.of("replica-a", "replica-b", "replica-c", "replica-d"), 128);
+
+        Map<String, Integer> hostsPerMember = new HashMap<>();
+        for (int host = 0; host < HOSTS; host++) {
+            hostsPerMember.merge(ring.owner(hostId(host)), 1, Integer::sum);
+        }
+
+        assertEquals(4, hostsPerMember.size());
+        // 128 points per member keep every shard within a third of the fair share
+        hostsPerMember.values().forEach(hosts -> assertTrue(Math.abs(hosts - HOSTS / 4) < HOSTS / 12, hostsPerMember::toString));
+    }
+
+    @Test
+    void movesOnlyTheHostsOfALeavingMember() {
+        var ring = new ConsistentHashRing(List.of("replica-a", "replica-b", "replica-c"), 128);
+        var withoutC = new ConsistentHashRing(List.of("replica-a", "replica-b"), 128);
+
+        for (int host = 0; host < HOSTS; host++) {
+            var owner = ring.owner(hostId(host));
+            if (!owner.equals("replica-c")) {
+                assertEquals(owner, withoutC.owner(hostId(host)));
+            }
+        }
+    }
+
+    @Test
+    void movesAboutAShareOfTheHostsToAJoiningMember() {
+        var ring = new ConsistentHashRing(List.of("replica-a", "replica-b", "replica-c"), 128);
+        var withD = new ConsistentHashRing(List.of("replica-a", "replica-b", "replica-c", "replica-d"), 128);
+
+        int moved = 0;
+        for (int host = 0; host < HOSTS; host++) {
+            var owner = withD.owner(hostId(host));
+            if (!owner.equals(ring.owner(hostId(host)))) {
+                assertEquals("replica-d", owner);
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - HOSTS / 4) < HOSTS / 12, "moved " + moved);
+    }
+
+    private static String hostId(int host) {
+        return "10.0." + host / 256 + "." + host % 256;
+    }
+}
@@ -0,0 +1,72 @@
+package domain.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Per-host grouping of a session snapshot, {@link HostSessionCounter} against the one pass per host
+ * the services used before and a boxed {@code groupingBy}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HostSessionCounterBenchmark {
+
+    @Param({"100000", "500000"})
+    int sessions;
+
+    @Param({"10", "200"})
+    int hosts;
+
+    private List<String> hostIdsOfSessions;
+    private List<String> hostIds;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        hostIds = new ArrayList<>(hosts);
+        for (int host = 0; host < hosts; host++) {
+            hostIds.add("10.0." + host / 256 + "." + host % 256);
+        }
+        hostIdsOfSessions = new ArrayList<>(sessions);
+        for (int session = 0; session < sessions; session++) {
+            hostIdsOfSessions.add(hostIds.get(random.nextInt(hosts)));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Integer> hostSessionCounter() {
+        return HostSessionCounter.countByHost(hostIdsOfSessions, Function.identity());
+    }
+
+    @Benchmark
+    public Map<String, Integer> groupingBy() {
+        return hostIdsOfSessions.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.summingInt(hostId -> 1)));
+    }
+
+    @Benchmark
+    public Map<String, Integer> passPerHost() {
+        return hostIds.stream().collect(Collectors.toMap(Function.identity(),
+                hostId -> (int) hostIdsOfSessions.stream().filter(hostId::equals).count()));
+    }
+}
@@ -0,0 +1,66 @@
+package domain.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostSessionCounterTest {
+
+    @Test
+    void countsTheSessionsOfEachHost() {
+        var sessionsPerHost = HostSessionCounter.countByHost(List.of("10.0.0.1", "10.0.0.2", "10.0.0.1", "10.0.0.3", "10.0.0.1"),
+                Function.identity());
+
+        assertEquals(Map.of("10.0.0.1", 3, "10.0.0.2", 1, "10.0.0.3", 1), sessionsPerHost);
+    }
+
+    @Test
+    void skipsSessionsWithoutHost() {
+        List<String> hostIds = new ArrayList<>();
+        hostIds.add("10.0.0.1");
+        hostIds.add(null);
+
+        assertEquals(Map.of("10.0.0.1", 1), HostSessionCounter.countByHost(hostIds, Function.identity()));
+    }
+
+    @Test
+    void returnsAnEmptyMapWithoutSessions() {
+        assertTrue(HostSessionCounter.countByHost(List.<String>of(), Function.identity()).isEmpty());
+    }
+
+    @Test
+    void keepsTheCountsWhenTheTableGrows() {
+        var counter = new HostSessionCounter(1);
+        List<String> hostIds = new ArrayList<>();
+        for (int session = 0; session < 50_000; session++) {
+            var host = session % 2_000;
+            var hostId = "10.0." + host / 256 + "." + host % 256;
+            hostIds.add(hostId);
+            counter.increment(hostId);
+        }
+
+        var expected = hostIds.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.summingInt(hostId -> 1)));
+        assertEquals(2_000, counter.size());
+        assertEquals(expected, counter.toMap());
+    }
+
+    @Test
+    void addsDeltasAndReadsSingleHosts() {
+        var counter = new HostSessionCounter();
+        counter.add("10.0.0.1", 5);
+        counter.add("10.0.0.1", -2);
+        counter.increment("10.0.0.2");
+
+        assertEquals(3, counter.get("10.0.0.1"));
+        assertEquals(1, counter.get("10.0.0.2"));
+        assertEquals(0, counter.get("10.0.0.3"));
+        assertEquals(0, counter.get(null));
+    }
+}
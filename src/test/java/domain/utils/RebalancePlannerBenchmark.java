@@ -0,0 +1,63 @@
+package domain.utils;
+
+import domain.utils.RebalancePlanner.HostLoad;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * One balance pass of {@link RebalancePlanner} over fleets of increasing size, with a third of
+ * the hosts overutilized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RebalancePlannerBenchmark {
+
+    private static final int CAPACITY = 1_000;
+
+    @Param({"100", "1000", "10000"})
+    int hosts;
+
+    private Map<String, HostLoad> hostLoads;
+    private Set<String> donors;
+    private Set<String> recipients;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        hostLoads = new HashMap<>();
+        for (int host = 0; host < hosts; host++) {
+            var sessions = host % 3 == 0 ? 700 + random.nextInt(300) : random.nextInt(500);
+            hostLoads.put("10." + host / 65_536 + "." + host / 256 % 256 + "." + host % 256, new HostLoad(sessions, CAPACITY));
+        }
+        var average = hostLoads.values().stream().mapToInt(HostLoad::sessions).average().orElse(0);
+        donors = hostLoads.entrySet().stream().filter(host -> host.getValue().sessions() > average)
+                .map(Map.Entry::getKey).collect(Collectors.toSet());
+        recipients = hostLoads.entrySet().stream().filter(host -> host.getValue().sessions() < average)
+                .map(Map.Entry::getKey).collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public RebalancePlanner.Plan plan() {
+        return RebalancePlanner.plan(hostLoads, donors, recipients);
+    }
+}
@@ -0,0 +1,106 @@
+package domain.utils;
+
+import domain.utils.RebalancePlanner.HostLoad;
+import domain.utils.RebalancePlanner.Transfer;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RebalancePlannerTest {
+
+    @Test
+    void bringsTheDonorDownToTheBalancedLevel() {
+        var hosts = Map.of(
+                "a", new HostLoad(90, 100),
+                "b", new HostLoad(30, 100),
+                "c", new HostLoad(30, 100));
+
+        var plan = RebalancePlanner.plan(hosts, Set.of("a"), Set.of("b", "c"));
+
+        assertEquals(Map.of("a", 50, "b", 50, "c", 50), plan.targets());
+        assertEquals(List.of(new Transfer("a", "b", 20), new Transfer("a", "c", 20)), plan.transfers());
+        assertEquals(Map.of("a", 40), plan.dropsPerHost());
+        assertEquals(40, plan.sessionsMoved());
+    }
+
+    @Test
+    void splitsTheSessionsInProportionToCapacity() {
+        var hosts = Map.of(
+                "small", new HostLoad(60, 100),
+                "large", new HostLoad(0, 200));
+
+        var plan = RebalancePlanner.plan(hosts, Set.of("small"), Set.of("large"));
+
+        assertEquals(Map.of("small", 20, "large", 40), plan.targets());
+        assertEquals(List.of(new Transfer("small", "large", 40)), plan.transfers());
+    }
+
+    @Test
+    void targetsAddUpToTheTotalDespiteRounding() {
+        var hosts = Map.of(
+                "a", new HostLoad(10, 100),
+                "b", new HostLoad(0, 100),
+                "c", new HostLoad(0, 100));
+
+        var plan = RebalancePlanner.plan(hosts, Set.of("a"), Set.of("b", "c"));
+
+        assertEquals(10, plan.targets().values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(6, plan.sessionsMoved());
+    }
+
+    @Test
+    void movesNoMoreThanTheRecipientsHaveRoomFor() {
+        var hosts = Map.of(
+                "a", new HostLoad(90, 100),
+                "b", new HostLoad(45, 100),
+                "c", new HostLoad(45, 100));
+
+        // c is not an allowed recipient, so only b's room below the level can be filled
+        var plan = RebalancePlanner.plan(hosts, Set.of("a"), Set.of("b"));
+
+        assertEquals(List.of(new Transfer("a", "b", 15)), plan.transfers());
+    }
+
+    @Test
+    void ignoresDonorsAndRecipientsWithoutALoad() {
+        var hosts = Map.of(
+                "a", new HostLoad(80, 100),
+                "b", new HostLoad(20, 100));
+
+        var plan = RebalancePlanner.plan(hosts, Set.of("a", "draining"), Set.of("b", "gone"));
+
+        assertEquals(List.of(new Transfer("a", "b", 30)), plan.transfers());
+    }
+
+    @Test
+    void returnsAnEmptyPlanWhenThereIsNoCapacity() {
+        var plan = RebalancePlanner.plan(Map.of("a", new HostLoad(10, 0)), Set.of("a"), Set.of());
+
+        assertTrue(plan.targets().isEmpty());
+        assertTrue(plan.transfers().isEmpty());
+    }
+
+    @Test
+    void balancesEveryHostOfALargeFleet() {
+        Map<String, HostLoad> hosts = new HashMap<>();
+        for (int host = 0; host < 1_000; host++) {
+            hosts.put("10.0." + host / 256 + "." + host % 256, new HostLoad(host % 3 == 0 ? 900 : 100, 1_000));
+        }
+
+        var plan = RebalancePlanner.plan(hosts, hosts.keySet(), hosts.keySet());
+
+        Map<String, Integer> sessions = new HashMap<>();
+        hosts.forEach((hostId, load) -> sessions.put(hostId, load.sessions()));
+        plan.transfers().forEach(transfer -> {
+            sessions.merge(transfer.fromHostId(), -transfer.sessions(), Integer::sum);
+            sessions.merge(transfer.toHostId(), transfer.sessions(), Integer::sum);
+        });
+        assertEquals(plan.targets(), sessions);
+    }
+}
@@ -0,0 +1,105 @@
+package domain.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScalingGateTest {
+
+    private final ScalingGate scalingGate = new ScalingGate();
+
+    @AfterEach
+    void tearDown() {
+        scalingGate.shutdown();
+    }
+
+    @Test
+    void appliesTheLargestChangeOfAPassOnce() {
+        var pass = new Object();
+
+        assertEquals(3, scalingGate.unclaimed("tracker", pass, 3));
+        assertEquals(0, scalingGate.unclaimed("tracker", pass, 2));
+        assertEquals(2, scalingGate.unclaimed("tracker", pass, 5));
+        assertEquals(-4, scalingGate.unclaimed("tracker", pass, -4));
+        assertEquals(-1, scalingGate.unclaimed("tracker", pass, -5));
+    }
+
+    @Test
+    void startsOverWithEveryPassAndApp() {
+        var pass = new Object();
+        scalingGate.unclaimed("tracker", pass, 3);
+
+        assertEquals(3, scalingGate.unclaimed("tracker", new Object(), 3));
+        assertEquals(3, scalingGate.unclaimed("tracker-grpc", pass, 3));
+        assertEquals(0, scalingGate.unclaimed("tracker", pass, 0));
+    }
+
+    @Test
+    void runsTheStepsOfAnAppOneAtATime() throws InterruptedException {
+        var running = new AtomicInteger();
+        var overlaps = new AtomicInteger();
+        List<Thread> branches = new ArrayList<>();
+        for (int branch = 0; branch < 3; branch++) {
+            branches.add(Thread.ofVirtual().start(() -> scalingGate.run("tracker", () -> {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                sleep(50);
+                running.decrementAndGet();
+            })));
+        }
+        for (var branch : branches) {
+            branch.join();
+        }
+
+        assertEquals(0, overlaps.get());
+    }
+
+    @Test
+    void finishesAStartedStepWhenTheBranchIsInterrupted() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        var finished = new AtomicBoolean();
+        var interruptKept = new AtomicBoolean();
+        var branch = Thread.ofVirtual().start(() -> {
+            scalingGate.run("tracker", () -> {
+                started.countDown();
+                sleep(200);
+                finished.set(true);
+            });
+            interruptKept.set(Thread.currentThread().isInterrupted());
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        branch.interrupt();
+        branch.join();
+
+        assertTrue(finished.get());
+        assertTrue(interruptKept.get());
+    }
+
+    @Test
+    void rethrowsTheFailureOfAStep() {
+        var failure = assertThrows(IllegalArgumentException.class,
+                () -> scalingGate.run("tracker", () -> { throw new IllegalArgumentException("deployment not found"); }));
+
+        assertEquals("deployment not found", failure.getMessage());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
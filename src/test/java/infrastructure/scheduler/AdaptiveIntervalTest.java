@@ -0,0 +1,75 @@
+package infrastructure.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveIntervalTest {
+
+    @Test
+    void halvesAfterAnUnsettledTick() {
+        var interval = new AdaptiveInterval("balance", Duration.ofSeconds(60), Duration.ofSeconds(15), Duration.ofMinutes(5), true);
+
+        interval.completed(Duration.ofMillis(100), true);
+
+        assertEquals(Duration.ofSeconds(30), interval.status().interval());
+        assertTrue(interval.status().unsettled());
+    }
+
+    @Test
+    void growsByAQuarterAfterASettledTick() {
+        var interval = new AdaptiveInterval("balance", Duration.ofSeconds(60), Duration.ofSeconds(15), Duration.ofMinutes(5), true);
+
+        interval.completed(Duration.ofMillis(100), false);
+
+        assertEquals(Duration.ofSeconds(75), interval.status().interval());
+    }
+
+    @Test
+    void staysWithinItsBounds() {
+        var interval = new AdaptiveInterval("balance", Duration.ofSeconds(60), Duration.ofSeconds(15), Duration.ofMinutes(5), true);
+
+        for (int tick = 0; tick < 10; tick++) {
+            interval.completed(Duration.ofMillis(100), true);
+        }
+        assertEquals(Duration.ofSeconds(15), interval.status().interval());
+
+        for (int tick = 0; tick < 20; tick++) {
+            interval.completed(Duration.ofMillis(100), false);
+        }
+        assertEquals(Duration.ofMinutes(5), interval.status().interval());
+    }
+
+    @Test
+    void isNeverShorterThanTwiceTheLastTick() {
+        var interval = new AdaptiveInterval("balance", Duration.ofSeconds(60), Duration.ofSeconds(15), Duration.ofMinutes(5), true);
+
+        interval.completed(Duration.ofSeconds(20), true);
+
+        assertEquals(Duration.ofSeconds(40), interval.status().interval());
+    }
+
+    @Test
+    void keepsTheBaseIntervalWhenNotAdaptive() {
+        var interval = new AdaptiveInterval("balance", Duration.ofSeconds(60), Duration.ofSeconds(15), Duration.ofMinutes(5), false);
+
+        interval.completed(Duration.ofMillis(100), true);
+
+        assertEquals(Duration.ofSeconds(60), interval.status().interval());
+    }
+
+    @Test
+    void isDueOnlyOnceTheIntervalHasPassed() {
+        var interval = new AdaptiveInterval("balance", Duration.ofSeconds(60), Duration.ofSeconds(15), Duration.ofMinutes(5), true);
+        assertTrue(interval.isDue());
+
+        interval.completed(Duration.ofMillis(100), false);
+
+        assertFalse(interval.isDue());
+        assertEquals(interval.status().lastTickAt().plus(interval.status().interval()), interval.status().nextTickAt());
+    }
+}